@@ -0,0 +1,75 @@
+package ua.alcash;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the heap retained by test cases with typical in-memory data:
+ * parsed samples and manual tests with their execution results.
+ *
+ * Usage: TestCaseMemoryBenchmark workspace_directory [tests_count]
+ * Reports retained heap per test case and per 10000 test cases.
+ */
+public class TestCaseMemoryBenchmark {
+    private static final String[] RESULTS = {
+            "UNKNOWN", "SKIPPED", "OK 0.012 0.010 2632 ok", "WRONG_ANSWER 0.250 0.247 3012 wrong answer",
+            "TIME_LIMIT_EXCEEDED 1.003 1.001 2048", "OK 0.031 0.030 2640 ok 5 tokens"
+    };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || !Configuration.load(args[0])) {
+            System.err.println("Usage: TestCaseMemoryBenchmark workspace_directory [tests_count]");
+            System.exit(1);
+        }
+        TestContent.configure();
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+        long before = usedHeap();
+        List<TestCase> testCases = createTestCases(count);
+        long after = usedHeap();
+        long dataBytes = 0;
+        for (TestCase testCase : testCases) {
+            dataBytes += testCase.getInput().getText().length() + testCase.getExpectedOutput().getText().length()
+                    + testCase.getProgramOutput().getText().length();
+        }
+        System.out.printf("%-24s %14s %14s %16s%n", "tests", "data chars", "heap B/test", "heap MB/10k");
+        System.out.printf("%-24d %14d %14d %16.2f%n", testCases.size(), dataBytes / count,
+                (after - before) / count, (after - before) * 10000.0 / count / (1 << 20));
+    }
+
+    // the data is mostly small numeric samples, some tests are larger
+    private static List<TestCase> createTestCases(int count) {
+        Random random = new Random(4243);
+        List<TestCase> testCases = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            int size = random.nextInt(10) == 0 ? 2000 : 20 + random.nextInt(200);
+            String input = numbers(random, size);
+            String output = numbers(random, size / 4 + 1);
+            TestCase testCase = new TestCase("manual" + i, TestContent.of(input), TestContent.of(output));
+            testCase.setProgramOutput(new String(output.toCharArray()));
+            // results are parsed from lines of the tests list file, so every test gets its own string
+            testCase.setExecutionResult(
+                    ExecutionResult.parse(new String(RESULTS[random.nextInt(RESULTS.length)].toCharArray())));
+            testCases.add(testCase);
+        }
+        return testCases;
+    }
+
+    private static String numbers(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length + 10);
+        while (builder.length() < length) {
+            builder.append(random.nextInt(1000000)).append(random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        return builder.toString();
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; ++i) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
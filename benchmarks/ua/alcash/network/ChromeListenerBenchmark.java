@@ -0,0 +1,136 @@
+package ua.alcash.network;
+
+import ua.alcash.Configuration;
+import ua.alcash.Problem;
+import ua.alcash.Receiver;
+import ua.alcash.parsing.ParseManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the time from sending a JSON task to the CHelper port to the problem reaching the receiver,
+ * which is where the user interface opens a tab for it. The time includes the batch window.
+ * The tasks are sent by several clients at once, every task has a unique name so that none is dropped as repeated.
+ *
+ * Usage: ChromeListenerBenchmark workspace_directory [clients [tasks_per_client]]
+ * Reports throughput and latency percentiles.
+ */
+public class ChromeListenerBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || !Configuration.load(args[0])) {
+            System.err.println("Usage: ChromeListenerBenchmark workspace_directory [clients [tasks_per_client]]");
+            System.exit(1);
+        }
+        ParseManager.configure();
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int tasksPerClient = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int tasks = clients * tasksPerClient;
+
+        long[] sent = new long[tasks];
+        long[] received = new long[tasks];
+        CountDownLatch done = new CountDownLatch(tasks);
+        AtomicInteger errors = new AtomicInteger();
+        ChromeListener listener = new ChromeListener(new Receiver() {
+            @Override
+            public void receiveProblems(Collection<Problem> problems) {
+                long now = System.nanoTime();
+                for (Problem problem : problems) {
+                    received[Integer.parseInt(problem.getId().substring(1))] = now;
+                    done.countDown();
+                }
+            }
+
+            @Override
+            public void receiveError(String message) {
+                errors.incrementAndGet();
+                System.err.println(message);
+            }
+
+            @Override
+            public void receiveWarning(String message) { System.err.println(message); }
+
+            @Override
+            public void runAndWait(Runnable action) { action.run(); }
+        });
+        int port = freePort();
+        listener.start(String.valueOf(port));
+
+        ExecutorService senders = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        for (int client = 0; client < clients; ++client) {
+            final int first = client * tasksPerClient;
+            senders.execute(() -> {
+                for (int task = first; task < first + tasksPerClient; ++task) {
+                    sent[task] = System.nanoTime();
+                    try {
+                        send(port, task);
+                    } catch (IOException exception) {
+                        errors.incrementAndGet();
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        boolean completed = done.await(60, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        senders.shutdown();
+        listener.stop();
+        if (!completed || errors.get() > 0) {
+            System.err.println((done.getCount() - errors.get()) + " tasks weren't received, " +
+                    errors.get() + " failed.");
+        }
+
+        long[] latencies = new long[tasks];
+        int count = 0;
+        for (int task = 0; task < tasks; ++task) {
+            if (received[task] != 0) {
+                latencies[count++] = received[task] - sent[task];
+            }
+        }
+        latencies = Arrays.copyOf(latencies, count);
+        Arrays.sort(latencies);
+        System.out.printf("%8s %12s %10s %10s %10s %10s%n", "tasks", "tasks/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        System.out.printf("%8d %12.1f %10.3f %10.3f %10.3f %10.3f%n", count, count * 1e9 / elapsed,
+                percentile(latencies, 0.5), percentile(latencies, 0.9), percentile(latencies, 0.99),
+                percentile(latencies, 1));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void send(int port, int task) throws IOException {
+        byte[] body = ("{\"name\":\"T" + task + ". Load\",\"group\":\"Benchmark\",\"url\":\"\"," +
+                "\"timeLimit\":1000,\"memoryLimit\":256,\"tests\":[{\"input\":\"1 2\\n\",\"output\":\"3\\n\"}]," +
+                "\"input\":{\"type\":\"stdin\"},\"output\":{\"type\":\"stdout\"}}").getBytes(StandardCharsets.UTF_8);
+        byte[] header = ("POST /json HTTP/1.1\r\nContent-Type: application/json\r\nContent-Length: " +
+                body.length + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            OutputStream output = socket.getOutputStream();
+            output.write(header);
+            output.write(body);
+            output.flush();
+            socket.shutdownOutput();
+            // the listener closes the connection after handling the request
+            while (socket.getInputStream().read() != -1) {
+            }
+        }
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) return 0;
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+}
@@ -0,0 +1,108 @@
+package ua.alcash.parsing;
+
+import ua.alcash.Configuration;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Measures ParseManager.parseProblemsFromHtml for every registered platform.
+ * The fixtures are the pages checked in under benchmarks/fixtures, one directory per platform ID:
+ * problem pages, and contest pages for the platforms that parse a contest from one page.
+ * The large gcj dashboard (about 1 MB, with the scoreboard embedded) has the size of a real contest page,
+ * so the gcj row shows the allocation behaviour on large pages.
+ * Platforms whose parsers can't parse a page (rcc, timus) have no fixtures.
+ *
+ * Usage: ParseBenchmark workspace_directory [fixtures_directory [measured_iterations]]
+ * Reports throughput, average time and allocated bytes per parse for each platform.
+ */
+public class ParseBenchmark {
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final String DEFAULT_FIXTURES = "benchmarks/fixtures";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || !Configuration.load(args[0])) {
+            System.err.println("Usage: ParseBenchmark workspace_directory [fixtures_directory [iterations]]");
+            System.exit(1);
+        }
+        ParseManager.configure();
+        Path fixtures = Paths.get(args.length > 1 ? args[1] : DEFAULT_FIXTURES);
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        Map<String, List<String>> pages = loadPages(fixtures);
+        List<String> platformIds = ParseManager.getPlatformIds();
+        Collections.sort(platformIds);
+        System.out.printf("%-12s %6s %12s %12s %14s%n", "platform", "pages", "ops/s", "avg ms", "alloc B/op");
+        for (String platformId : platformIds) {
+            List<String> platformPages = pages.get(platformId);
+            if (platformPages == null) {
+                System.out.printf("%-12s %6s%n", platformId, "-");
+                continue;
+            }
+            checkPages(platformId, platformPages);
+            run(platformId, platformPages, WARMUP_ITERATIONS);
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            run(platformId, platformPages, iterations);
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedBytes() - allocatedBefore;
+            long operations = (long) iterations * platformPages.size();
+            System.out.printf("%-12s %6d %12.1f %12.3f %14d%n", platformId, platformPages.size(),
+                    operations * 1e9 / elapsed, elapsed / 1e6 / operations, allocated / operations);
+        }
+    }
+
+    // platform ID -> contents of the pages in its directory, in the order of file names
+    private static Map<String, List<String>> loadPages(Path fixtures) throws IOException {
+        Map<String, List<String>> pages = new HashMap<>();
+        try (DirectoryStream<Path> platforms = Files.newDirectoryStream(fixtures, Files::isDirectory)) {
+            for (Path platform : platforms) {
+                List<Path> files = new ArrayList<>();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(platform, "*.html")) {
+                    stream.forEach(files::add);
+                }
+                Collections.sort(files);
+                List<String> contents = new ArrayList<>();
+                for (Path file : files) {
+                    contents.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+                }
+                pages.put(platform.getFileName().toString(), contents);
+            }
+        }
+        return pages;
+    }
+
+    // a page that doesn't parse would measure only the failure path, so it's reported
+    private static void checkPages(String platformId, List<String> pages) {
+        for (int i = 0; i < pages.size(); ++i) {
+            try {
+                ParseManager.parseProblemsFromHtml(platformId, pages.get(i));
+            } catch (Exception exception) {
+                System.err.println(platformId + " fixture " + i + " doesn't parse: " + exception.getMessage());
+            }
+        }
+    }
+
+    private static void run(String platformId, List<String> pages, int iterations) {
+        for (int i = 0; i < iterations; ++i) {
+            for (String page : pages) {
+                try {
+                    ParseManager.parseProblemsFromHtml(platformId, page);
+                } catch (Exception ignored) {  // failing pages are measured as well
+                }
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
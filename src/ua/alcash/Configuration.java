@@ -14,10 +14,59 @@ public class Configuration {
 
     static private Properties properties;
 
+    static private String workspaceDirectory;
+
+    // values of the keys missing from configuration files created by older versions
+    static private final Properties DEFAULTS = new Properties();
+
+    static {
+        DEFAULTS.setProperty("CHelper threads", "4");
+        DEFAULTS.setProperty("CHelper queue size", "16");
+        DEFAULTS.setProperty("CHelper maximum request size", "32");
+        DEFAULTS.setProperty("CHelper batch window", "300");
+        DEFAULTS.setProperty("CHelper batch size", "26");
+        DEFAULTS.setProperty("CHelper duplicate window", "10000");
+        DEFAULTS.setProperty("tester port", "4244");
+        DEFAULTS.setProperty("workspace rescan interval", "60");
+        DEFAULTS.setProperty("workspace session file", ".session");
+        DEFAULTS.setProperty("page cache directory", ".cache/pages");
+        DEFAULTS.setProperty("page cache ttl", "86400");
+        DEFAULTS.setProperty("page cache size", "64");
+        DEFAULTS.setProperty("page cache offline", "false");
+        DEFAULTS.setProperty("contest parsing threads", "4");
+        DEFAULTS.setProperty("contest parsing threads codechef", "2");
+        DEFAULTS.setProperty("problem manifest file", "problem.json");
+        DEFAULTS.setProperty("test status log", "status");
+        DEFAULTS.setProperty("test maximum edited size", "4");
+    }
+
     static public String get(String key) { return properties.getProperty(key); }
 
+    // invalid values are replaced by the default ones as well
+    static public int getInt(String key) { return getInt(key, Integer.parseInt(DEFAULTS.getProperty(key))); }
+
+    static public int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(key).trim());
+        } catch (NullPointerException | NumberFormatException exception) {
+            return defaultValue;
+        }
+    }
+
+    static public long getLong(String key) {
+        try {
+            return Long.parseLong(get(key).trim());
+        } catch (NullPointerException | NumberFormatException exception) {
+            return Long.parseLong(DEFAULTS.getProperty(key));
+        }
+    }
+
+    static public boolean getBoolean(String key) { return Boolean.parseBoolean(get(key).trim()); }
+
     static public KeyStroke getShortcut(String action) { return KeyStroke.getKeyStroke(get("shortcut " + action)); }
 
+    static public String getWorkspaceDirectory() { return workspaceDirectory; }
+
     static public String getPlatform(String key) { return get("platform " + key); }
 
     static public String getExtension(String key) { return get("extension " + key); }
@@ -26,9 +75,10 @@ public class Configuration {
         try {
             FileInputStream input = new FileInputStream(
                     workspaceDirectory + java.io.File.separator + CONFIGURATION_FILE_NAME);
-            Properties loadedProperties = new Properties();
+            Properties loadedProperties = new Properties(DEFAULTS);
             loadedProperties.loadFromXML(input);
             properties = loadedProperties;
+            Configuration.workspaceDirectory = workspaceDirectory;
             return true;
         } catch (Throwable exception) {
             return false;
@@ -0,0 +1,168 @@
+package ua.alcash;
+
+import java.util.Locale;
+
+/**
+ * Result of running the solution on a test, parsed once when it's received from the tester.
+ * Results of the tests that weren't run yet have only the verdict, and their times are NaN.
+ * In the tests list file the result is written as "VERDICT" or "VERDICT wall_time cpu_time memory message".
+ * Note: the natural ordering compares only the wall times, so it's inconsistent with equals.
+ */
+public final class ExecutionResult implements Comparable<ExecutionResult> {
+    public enum Verdict {
+        UNKNOWN("UNKNOWN"),
+        SKIPPED("SKIPPED"),
+        PENDING("PENDING"),
+        RUNNING("RUNNING"),
+        OK("ok"),
+        WRONG_ANSWER("wrong answer"),
+        RUNTIME_ERROR("runtime error"),
+        TIME_LIMIT_EXCEEDED("time limit exceeded"),
+        JUDGEMENT_ERROR("judgement error");
+
+        private final String displayName;
+
+        Verdict(String displayName) { this.displayName = displayName; }
+
+        public String getDisplayName() { return displayName; }
+    }
+
+    public static final ExecutionResult UNKNOWN = new ExecutionResult(Verdict.UNKNOWN);
+    public static final ExecutionResult SKIPPED = new ExecutionResult(Verdict.SKIPPED);
+    public static final ExecutionResult PENDING = new ExecutionResult(Verdict.PENDING);
+    public static final ExecutionResult RUNNING = new ExecutionResult(Verdict.RUNNING);
+
+    private final Verdict verdict;
+    private final double wallTime;  // seconds
+    private final double cpuTime;  // seconds
+    private final long memory;  // kilobytes, -1 if unknown
+    private final String message;  // checker message or runtime error description
+    private String displayText;
+
+    private ExecutionResult(Verdict verdict) { this(verdict, Double.NaN, Double.NaN, -1, ""); }
+
+    public ExecutionResult(Verdict verdict, double wallTime, double cpuTime, long memory, String message) {
+        this.verdict = verdict;
+        this.wallTime = wallTime;
+        this.cpuTime = cpuTime;
+        this.memory = memory;
+        this.message = canonicalMessage(message);
+    }
+
+    // the messages which are just the verdict, like "ok", repeat across all the tests, so they share one string;
+    // the other messages, like the line of a wrong answer, are usually unique
+    private static String canonicalMessage(String message) {
+        for (Verdict verdict : Verdict.values()) {
+            if (verdict.displayName.equals(message)) {
+                return verdict.displayName;
+            }
+        }
+        return message;
+    }
+
+    public Verdict getVerdict() { return verdict; }
+
+    public boolean hasTime() { return !Double.isNaN(wallTime); }
+
+    public double getWallTime() { return wallTime; }
+
+    public double getCpuTime() { return cpuTime; }
+
+    public long getMemory() { return memory; }
+
+    public String getMessage() { return message; }
+
+    // the time on the first line and the message or the verdict on the second one
+    public String getDisplayText() {
+        if (displayText == null) {
+            String description = message.isEmpty() ? verdict.getDisplayName() : message;
+            displayText = hasTime() ? String.format(Locale.ROOT, "%.3f\n%s", wallTime, description) : description;
+        }
+        return displayText;
+    }
+
+    @Override
+    public String toString() {
+        if (!hasTime()) {
+            return verdict.name();
+        }
+        String result = String.format(Locale.ROOT, "%s %.3f %.3f %d", verdict.name(), wallTime, cpuTime, memory);
+        return message.isEmpty() ? result : result + " " + message;
+    }
+
+    // returns UNKNOWN if the value can't be parsed
+    public static ExecutionResult parse(String value) {
+        String[] tokens = value.split(" ", 5);
+        Verdict verdict;
+        try {
+            verdict = Verdict.valueOf(tokens[0]);
+        } catch (IllegalArgumentException exception) {
+            return parseLegacy(value);
+        }
+        if (tokens.length == 1) {
+            switch (verdict) {
+                case SKIPPED:
+                    return SKIPPED;
+                case PENDING:
+                    return PENDING;
+                case RUNNING:
+                    return RUNNING;
+                default:
+                    return UNKNOWN;
+            }
+        }
+        try {
+            return new ExecutionResult(verdict,
+                    Double.parseDouble(tokens[1]),
+                    tokens.length > 2 ? Double.parseDouble(tokens[2]) : Double.NaN,
+                    tokens.length > 3 ? Long.parseLong(tokens[3]) : -1,
+                    tokens.length > 4 ? tokens[4] : "");
+        } catch (NumberFormatException exception) {
+            return UNKNOWN;
+        }
+    }
+
+    // results written by the older tester are "wall_time message"
+    private static ExecutionResult parseLegacy(String value) {
+        String[] tokens = value.split(" ", 2);
+        if (tokens.length < 2) {
+            return UNKNOWN;
+        }
+        double wallTime;
+        try {
+            wallTime = Double.parseDouble(tokens[0]);
+        } catch (NumberFormatException exception) {
+            return UNKNOWN;
+        }
+        Verdict verdict = Verdict.RUNTIME_ERROR;
+        for (Verdict candidate : Verdict.values()) {
+            if (tokens[1].startsWith(candidate.getDisplayName())) {
+                verdict = candidate;
+            }
+        }
+        return new ExecutionResult(verdict, wallTime, Double.NaN, -1, tokens[1]);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof ExecutionResult)) return false;
+        ExecutionResult result = (ExecutionResult) other;
+        return verdict == result.verdict && Double.compare(wallTime, result.wallTime) == 0
+                && Double.compare(cpuTime, result.cpuTime) == 0 && memory == result.memory
+                && message.equals(result.message);
+    }
+
+    @Override
+    public int hashCode() { return verdict.hashCode() * 31 + Double.hashCode(wallTime); }
+
+    // results are ordered by the wall time, the results without time go first;
+    // different results with the same time are equal in this order
+    @Override
+    public int compareTo(ExecutionResult other) {
+        if (hasTime() != other.hasTime()) {
+            return hasTime() ? 1 : -1;
+        }
+        return hasTime() ? Double.compare(wallTime, other.wallTime) : 0;
+    }
+}
@@ -0,0 +1,251 @@
+package ua.alcash;
+
+import ua.alcash.filesystem.ProblemSync;
+import ua.alcash.filesystem.WorkspaceManager;
+import ua.alcash.parsing.ParseManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the problem receiving, the workspace synchronization and the project generation without the user interface.
+ * Messages are written to the standard streams, and the workspace is controlled by the commands from the standard
+ * input, one per line. After the input ends, the workspace keeps receiving problems until the process is stopped.
+ *
+ * Usage: HeadlessLauncher [workspace_directory]
+ */
+public class HeadlessLauncher implements Receiver {
+    private static final String HELP = "Commands:\n"
+            + "  list                 open problems\n"
+            + "  parse <url>          parse a problem\n"
+            + "  contest <url>        parse all the problems of a contest\n"
+            + "  open <directory>     open a problem directory\n"
+            + "  close <index> [delete]\n"
+            + "                       close a problem, and delete its directory if asked\n"
+            + "  apply                regenerate the workspace\n"
+            + "  quit";
+
+    // the workspace is changed only on this thread, like on the event dispatch thread in the user interface
+    private volatile Thread workspaceThreadInstance;
+    private final ExecutorService workspaceThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "HeadlessWorkspaceThread");
+        thread.setDaemon(true);
+        workspaceThreadInstance = thread;
+        return thread;
+    });
+    private final ExecutorService parsers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "HeadlessParserThread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WorkspaceManager workspaceManager;
+    private boolean stopped = false;
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        String directory = args.length > 0 ? args[0] : System.getProperty("user.dir");
+        HeadlessLauncher launcher = new HeadlessLauncher();
+        if (!launcher.start(Paths.get(directory).toAbsolutePath().toString())) {
+            System.exit(1);
+        }
+        launcher.readCommands(new BufferedReader(new InputStreamReader(System.in)));
+    }
+
+    private boolean start(String directory) throws IOException {
+        workspaceManager = new WorkspaceManager(this);
+        if (!workspaceManager.setWorkspace(directory)) {
+            receiveError("Directory " + directory + " doesn't contain valid configuration file "
+                    + Configuration.CONFIGURATION_FILE_NAME);
+            return false;
+        }
+        ParseManager.configure();
+        workspaceManager.configure();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+        runOnWorkspaceThread(() -> {
+            for (ProblemSync problemSync : workspaceManager.restoreSession()) {
+                log("restored " + describe(problemSync));
+            }
+        });
+        log("workspace " + directory + " is ready, type help for the list of commands");
+        return true;
+    }
+
+    private synchronized void stop() {
+        if (stopped) return;
+        stopped = true;
+        // the problems are closed on the workspace thread, and the writing of their changes is awaited on this one
+        runOnWorkspaceThread(() -> workspaceManager.closeAllProblems(false));
+        workspaceManager.stop();
+    }
+
+    private void readCommands(BufferedReader input) throws IOException {
+        String line;
+        while ((line = input.readLine()) != null) {
+            String[] tokens = line.trim().split("\\s+", 2);
+            String argument = tokens.length > 1 ? tokens[1] : "";
+            switch (tokens[0]) {
+                case "":
+                    break;
+                case "help":
+                    log(HELP);
+                    break;
+                case "list":
+                    runOnWorkspaceThread(this::listProblems);
+                    break;
+                case "parse":
+                    parsers.execute(() -> {
+                        try {
+                            receiveProblems(ParseManager.parseProblemByUrl(argument));
+                        } catch (Exception exception) {
+                            receiveError("Parsing " + argument + " failed: " + exception.getMessage());
+                        }
+                    });
+                    break;
+                case "contest":
+                    parsers.execute(() -> {
+                        try {
+                            ParseManager.parseContestByUrl(argument,
+                                    problem -> receiveProblems(Collections.singletonList(problem)));
+                        } catch (Exception exception) {
+                            receiveError("Parsing " + argument + " failed: " + exception.getMessage());
+                        }
+                    });
+                    break;
+                case "open":
+                    runOnWorkspaceThread(() -> {
+                        log("opened " + describe(workspaceManager.openProblem(Paths.get(argument))));
+                        workspaceManager.updateWorkspace(true);
+                    });
+                    break;
+                case "close":
+                    runOnWorkspaceThread(() -> closeProblem(argument));
+                    break;
+                case "apply":
+                    runOnWorkspaceThread(() -> workspaceManager.updateWorkspace(false));
+                    break;
+                case "quit":
+                    stop();
+                    System.exit(0);
+                    break;
+                default:
+                    receiveError("Unknown command " + tokens[0] + ", type help for the list of commands");
+            }
+        }
+        log("the input is closed, the workspace keeps running until the process is stopped");
+    }
+
+    private interface WorkspaceAction {
+        void run() throws IOException;
+    }
+
+    // commands wait for their completion, so that their output isn't mixed with the next command
+    private void runOnWorkspaceThread(WorkspaceAction action) {
+        try {
+            workspaceThread.submit(() -> {
+                try {
+                    action.run();
+                } catch (IOException exception) {
+                    receiveError(exception.getMessage());
+                }
+            }).get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException exception) {
+            receiveError(String.valueOf(exception.getCause()));
+        }
+    }
+
+    private void listProblems() {
+        List<ProblemSync> problemSyncs = workspaceManager.getProblems();
+        if (problemSyncs.isEmpty()) {
+            log("no open problems");
+        }
+        for (int index = 0; index < problemSyncs.size(); ++index) {
+            log(index + " " + describe(problemSyncs.get(index)));
+        }
+    }
+
+    private void closeProblem(String argument) throws IOException {
+        String[] tokens = argument.split("\\s+");
+        int index;
+        try {
+            index = Integer.parseInt(tokens[0]);
+        } catch (NumberFormatException exception) {
+            throw new IOException("Problem index is expected, type list to see the indices");
+        }
+        List<ProblemSync> problemSyncs = workspaceManager.getProblems();
+        if (index < 0 || index >= problemSyncs.size()) {
+            throw new IOException("There is no problem with index " + index);
+        }
+        String description = describe(problemSyncs.get(index));
+        workspaceManager.closeProblem(index, tokens.length > 1 && tokens[1].equals("delete"));
+        workspaceManager.updateWorkspace(true);
+        log("closed " + description);
+    }
+
+    private static String describe(ProblemSync problemSync) {
+        return problemSync.getProblem().getId() + " (" + problemSync.getProblem().getFullName().trim() + ", "
+                + problemSync.getTestCaseSet().size() + " tests) in " + problemSync.getDirectory();
+    }
+
+    // the same problem received again is merged into the open one
+    @Override
+    public void receiveProblems(Collection<Problem> problems) {
+        workspaceThread.execute(() -> {
+            for (Problem problem : problems) {
+                try {
+                    int index = workspaceManager.findProblem(problem);
+                    if (index != -1) {
+                        workspaceManager.mergeProblem(index, problem);
+                        log("updated " + describe(workspaceManager.getProblems().get(index)));
+                    } else {
+                        log("added " + describe(workspaceManager.addProblem(problem)));
+                    }
+                } catch (IOException exception) {
+                    receiveError(exception.getMessage());
+                }
+            }
+            workspaceManager.updateWorkspace(true);
+        });
+    }
+
+    @Override
+    public void runAndWait(Runnable action) {
+        if (Thread.currentThread() == workspaceThreadInstance) {
+            action.run();
+            return;
+        }
+        try {
+            workspaceThread.submit(action).get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+    }
+
+    @Override
+    public void receiveError(String message) { log(System.err, "error: " + message); }
+
+    @Override
+    public void receiveWarning(String message) { log(System.err, "warning: " + message); }
+
+    private static void log(String message) { log(System.out, message); }
+
+    private static synchronized void log(PrintStream stream, String message) {
+        stream.println("[" + new SimpleDateFormat("HH:mm:ss").format(new Date()) + "] " + message);
+    }
+}
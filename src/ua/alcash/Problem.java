@@ -5,8 +5,6 @@ import net.egork.chelper.task.Task;
 import net.egork.chelper.task.TestType;
 import ua.alcash.parsing.ParseManager;
 
-import java.util.ArrayList;
-
 /**
  * Created by Al.Cash on 5/8/17.
  */
@@ -40,7 +38,7 @@ public class Problem {
     private boolean customChecker = false;
     private String checkerParams = defaultCheckerParams;
 
-    private ArrayList<TestCase> testCases = new ArrayList<>();
+    private TestCaseStore testCases = new TestCaseStore();
 
     private static final int timeLimitBit = 0;
     private static final int memoryLimitBit = 1;
@@ -78,11 +76,15 @@ public class Problem {
         if (task.testType != null) testType = task.testType;
 
         for (int i = 0; i < task.tests.length; ++i) {
-            String testName = sampleTestName + (i + 1);
-            testCases.add(new TestCase(testName, task.tests[i].input, task.tests[i].output));
+            addSampleTest(task.tests[i].input, task.tests[i].output);
         }
     }
 
+    public void addSampleTest(String input, String output) {
+        String testName = sampleTestName + (testCases.size() + 1);
+        testCases.add(new TestCase(testName, TestContent.of(input), TestContent.of(output)));
+    }
+
     public String getValue(String key, boolean nameOnly) {
         switch (key) {
             case "problem_id":
@@ -197,7 +199,7 @@ public class Problem {
         checkerParams = value;
     }
 
-    public ArrayList<TestCase> getTestCaseSet() { return testCases; }
+    public TestCaseStore getTestCaseSet() { return testCases; }
 
     public boolean projectRegenerationRequired() {
         return (changesMask & (1 << interactiveBit | 1 << customCheckerBit)) > 0
@@ -0,0 +1,19 @@
+package ua.alcash;
+
+import java.util.Collection;
+
+/**
+ * Receives the problems and the messages from the network listeners and the workspace,
+ * so that they don't depend on the user interface.
+ * The methods are called from any thread, implementations pass the calls to their own thread.
+ */
+public interface Receiver {
+    void receiveProblems(Collection<Problem> problems);
+
+    void receiveError(String message);
+
+    void receiveWarning(String message);
+
+    // runs the action on the receiver's thread and waits for it, the tests of the problems are changed only there
+    void runAndWait(Runnable action);
+}
@@ -4,19 +4,15 @@ package ua.alcash;
  * Created by Al.Cash on 5/8/17.
  */
 public class TestCase {
-    private final static String UNKNOWN_KEY = "UNKNOWN";
-    private final static String SKIPPED_KEY = "SKIPPED";
-    private final static String RUNNING_KEY = "RUNNING";
-
     private String name;
-    private String input = "";
-    private String expectedOutput = "";
-    private String programOutput = "";
-    private String[] executionResults = new String[] {UNKNOWN_KEY};
+    private TestContent input = TestContent.EMPTY;
+    private TestContent expectedOutput = TestContent.EMPTY;
+    private TestContent programOutput = TestContent.EMPTY;
+    private ExecutionResult executionResult = ExecutionResult.UNKNOWN;
 
     public TestCase(String name) { this.name = name; }
 
-    public TestCase(String name, String input, String output) {
+    public TestCase(String name, TestContent input, TestContent output) {
         this.name = name;
         this.input = input;
         this.expectedOutput = output;
@@ -24,25 +20,29 @@ public class TestCase {
 
     public String getName() { return name; }
 
-    public String getInput() { return input; }
-    public void setInput(String value) { input = value; }
-
-    public String getExpectedOutput() { return expectedOutput; }
-    public void setExpectedOutput(String value) { expectedOutput = value; }
+    public TestContent getInput() { return input; }
+    public void setInput(TestContent value) { input = value; }
+    public void setInput(String value) { input = TestContent.of(value); }
 
-    public String getProgramOutput() { return programOutput; }
-    public void setProgramOutput(String value) { programOutput = value; }
+    public TestContent getExpectedOutput() { return expectedOutput; }
+    public void setExpectedOutput(TestContent value) { expectedOutput = value; }
+    public void setExpectedOutput(String value) { expectedOutput = TestContent.of(value); }
 
-    public String getExecutionResults(String delimiter) { return String.join(delimiter, executionResults); }
-    public void setExecutionResults(String value) { executionResults = value.split(" ", 2); }
+    public TestContent getProgramOutput() { return programOutput; }
+    public void setProgramOutput(TestContent value) { programOutput = value; }
+    public void setProgramOutput(String value) { programOutput = TestContent.of(value); }
 
-    public void flipSkipped() {
-        if (executionResults.length == 1 && executionResults[0].equals(SKIPPED_KEY)) {
-            executionResults[0] = UNKNOWN_KEY;
-        } else {
-            executionResults = new String[] {SKIPPED_KEY};
-        }
+    public ExecutionResult getExecutionResult() { return executionResult; }
+    // returns false if the result hasn't changed
+    public boolean setExecutionResult(ExecutionResult value) {
+        if (value.equals(executionResult)) return false;
+        executionResult = value;
+        return true;
     }
 
-    public boolean isRunning() { return executionResults.length == 1 && executionResults[0].equals(RUNNING_KEY); }
+    public boolean isSkipped() { return executionResult.getVerdict() == ExecutionResult.Verdict.SKIPPED; }
+
+    public void flipSkipped() { setExecutionResult(isSkipped() ? ExecutionResult.UNKNOWN : ExecutionResult.SKIPPED); }
+
+    public boolean isRunning() { return executionResult.getVerdict() == ExecutionResult.Verdict.RUNNING; }
 }
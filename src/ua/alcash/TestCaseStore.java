@@ -0,0 +1,48 @@
+package ua.alcash;
+
+import java.util.*;
+
+/**
+ * Ordered collection of test cases with constant time lookup by name.
+ * Test names are unique within a problem and never change, so they serve as stable test IDs.
+ */
+public class TestCaseStore implements Iterable<TestCase> {
+    private final ArrayList<TestCase> testCases = new ArrayList<>();
+    private final HashMap<String, Integer> positions = new HashMap<>();
+
+    public int size() { return testCases.size(); }
+
+    public TestCase get(int index) { return testCases.get(index); }
+
+    public boolean contains(String name) { return positions.containsKey(name); }
+
+    // returns -1 if there is no test case with such name
+    public int indexOf(String name) {
+        Integer position = positions.get(name);
+        return position != null ? position : -1;
+    }
+
+    public void add(TestCase testCase) {
+        if (contains(testCase.getName())) {
+            throw new IllegalArgumentException("Test case " + testCase.getName() + " already exists.");
+        }
+        positions.put(testCase.getName(), testCases.size());
+        testCases.add(testCase);
+    }
+
+    public void swap(int index1, int index2) {
+        Collections.swap(testCases, index1, index2);
+        positions.put(testCases.get(index1).getName(), index1);
+        positions.put(testCases.get(index2).getName(), index2);
+    }
+
+    public void remove(int index) {
+        positions.remove(testCases.remove(index).getName());
+        for (int i = index; i < testCases.size(); ++i) {
+            positions.put(testCases.get(i).getName(), i);
+        }
+    }
+
+    @Override
+    public Iterator<TestCase> iterator() { return Collections.unmodifiableList(testCases).iterator(); }
+}
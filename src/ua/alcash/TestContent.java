@@ -0,0 +1,94 @@
+package ua.alcash;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Data of a test file. The table shows only a bounded preview of it,
+ * and the full text is loaded only when it's edited or written.
+ * The data is kept in UTF-8, which takes half the memory of a String for the usual ASCII tests.
+ */
+public abstract class TestContent {
+    private static int maxPreviewLength;
+    private static long maxEditedSize;
+
+    public static final TestContent EMPTY = of("");
+
+    public static void configure() {
+        maxPreviewLength = Integer.parseInt(Configuration.get("test maximum loaded length"));
+        maxEditedSize = Configuration.getLong("test maximum edited size") << 20;
+    }
+
+    public static int getMaxPreviewLength() { return maxPreviewLength; }
+
+    public static TestContent of(String text) { return new InMemory(text); }
+
+    public abstract String getPreview();
+
+    public abstract String getText();
+
+    // size of the data in UTF-8
+    public abstract long getSize();
+
+    // the full text of larger tests isn't loaded, they are only previewed
+    public boolean isEditable() { return getSize() <= maxEditedSize; }
+
+    public boolean hasText(String text) { return getText().equals(text); }
+
+    // the beginning of the text, followed by ... if it's too long
+    protected static String makePreview(CharSequence text) {
+        if (text.length() <= maxPreviewLength) {
+            return text.toString();
+        }
+        return text.subSequence(0, maxPreviewLength) + "...";
+    }
+
+    // decodes the preview from the beginning of UTF-8 data, one more character is decoded to know
+    // if the preview is shorter than the text
+    protected static String makePreview(ByteBuffer bytes, boolean wholeData) {
+        return makePreview(decode(bytes, maxPreviewLength + 1, wholeData));
+    }
+
+    // decodes at most maxChars characters, UTF-8 text never has more characters than bytes
+    protected static CharBuffer decode(ByteBuffer bytes, int maxChars, boolean wholeData) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(Math.min(bytes.remaining(), maxChars));
+        // the decoding stops when the buffer is full or the bytes end, possibly in the middle of a character
+        decoder.decode(bytes, chars, wholeData);
+        if (wholeData) {
+            decoder.flush(chars);
+        }
+        chars.flip();
+        return chars;
+    }
+
+    private static class InMemory extends TestContent {
+        private final byte[] data;
+
+        InMemory(String text) { data = text.getBytes(StandardCharsets.UTF_8); }
+
+        // the preview is a part of the data, so it's decoded on request instead of being stored
+        @Override
+        public String getPreview() {
+            if (data.length <= maxPreviewLength) {
+                return getText();
+            }
+            return makePreview(ByteBuffer.wrap(data), true);
+        }
+
+        @Override
+        public String getText() { return new String(data, StandardCharsets.UTF_8); }
+
+        @Override
+        public long getSize() { return data.length; }
+
+        @Override
+        public boolean hasText(String text) { return Arrays.equals(data, text.getBytes(StandardCharsets.UTF_8)); }
+    }
+}
@@ -0,0 +1,19 @@
+package ua.alcash;
+
+/**
+ * Notified about the changes of the test cases of a problem, like the table which displays them.
+ * Test cases are addressed by their indices.
+ */
+public interface TestSetListener {
+    TestSetListener NONE = new TestSetListener() {};
+
+    default void testCaseUpdated(int index) {}
+
+    default void testCaseAdded() {}
+
+    default void testCasesAdded(int count) {}
+
+    default void testCaseDeleted(int index) {}
+
+    default void executionResultsUpdated(int index) {}
+}
@@ -0,0 +1,54 @@
+package ua.alcash.filesystem;
+
+import ua.alcash.util.Hash;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size, modification time and content hash of a tracked file.
+ * A file system event doesn't require reloading the file if its attributes or its content hash didn't change.
+ */
+class FileFingerprint {
+    // the file is deleted by us
+    static final FileFingerprint DELETED = new FileFingerprint(-1, -1, null);
+
+    // the file is being written by us, so its modification time isn't known yet
+    private static final long WRITING = -1;
+    // the file was written by us, its modification time is recorded when the first event compares the content
+    private static final long WRITTEN = -2;
+
+    final long size;
+    final long modifiedTime;  // nanoseconds
+    final String hash;  // null if unknown
+
+    private FileFingerprint(long size, long modifiedTime, String hash) {
+        this.size = size;
+        this.modifiedTime = modifiedTime;
+        this.hash = hash;
+    }
+
+    static FileFingerprint expected(byte[] data) { return new FileFingerprint(data.length, WRITING, Hash.of(data)); }
+
+    // the fingerprint of the data written by us, the file isn't read back, because it can be changed since then
+    static FileFingerprint written(long size, String hash) { return new FileFingerprint(size, WRITTEN, hash); }
+
+    FileFingerprint written() { return written(size, hash); }
+
+    static FileFingerprint read(Path path, String hash) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return new FileFingerprint(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS), hash);
+    }
+
+    FileFingerprint withHash(String hash) { return new FileFingerprint(size, modifiedTime, hash); }
+
+    boolean isWriting() { return this != DELETED && modifiedTime == WRITING; }
+
+    // the attributes of a file written by us are unknown, so its content is compared by the hash
+    boolean hasSameAttributes(FileFingerprint other) {
+        return modifiedTime != WRITTEN && size == other.size && modifiedTime == other.modifiedTime;
+    }
+}
@@ -0,0 +1,84 @@
+package ua.alcash.filesystem;
+
+import ua.alcash.TestContent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Test data that stays in the file. Only the preview is kept in memory, in UTF-8, it's decoded
+ * from the beginning of the file on the first request. The full text is read from the file every time
+ * it's requested and isn't kept, the tests too large to edit are never read whole.
+ */
+class FileTestContent extends TestContent {
+    // UTF-8 character takes at most 4 bytes
+    private static final int MAX_BYTES_PER_CHAR = 4;
+
+    private final Path path;
+    private volatile byte[] preview;
+
+    FileTestContent(Path path) { this.path = path; }
+
+    // used when the file is going to contain the data with the given preview
+    FileTestContent(Path path, String preview) {
+        this.path = path;
+        this.preview = preview.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String getPreview() {
+        byte[] preview = this.preview;
+        if (preview == null) {
+            preview = read((long) (getMaxPreviewLength() + 1) * MAX_BYTES_PER_CHAR, TestContent::makePreview)
+                    .getBytes(StandardCharsets.UTF_8);
+            this.preview = preview;
+        }
+        return new String(preview, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String getText() {
+        return read(Long.MAX_VALUE, (bytes, wholeFile) -> decode(bytes, Integer.MAX_VALUE, wholeFile).toString());
+    }
+
+    @Override
+    public long getSize() {
+        try {
+            return Files.size(path);
+        } catch (NoSuchFileException exception) {
+            return 0;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private interface Decoder { String decode(ByteBuffer bytes, boolean wholeFile); }
+
+    // reads at most maxBytes bytes from the beginning of the file into a buffer which is dropped after decoding;
+    // the file isn't mapped, because a mapping is released only when the buffer is garbage collected
+    private String read(long maxBytes, Decoder decoder) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long size = Math.min(fileSize, maxBytes);
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Test file is too large: " + path);
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
+            while (bytes.hasRemaining() && channel.read(bytes) != -1) {
+            }
+            bytes.flip();
+            return decoder.decode(bytes, size == fileSize);
+        } catch (NoSuchFileException exception) {  // deletion is handled by the watcher
+            return "";
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
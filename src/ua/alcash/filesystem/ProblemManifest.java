@@ -0,0 +1,107 @@
+package ua.alcash.filesystem;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import net.egork.chelper.task.TestType;
+import ua.alcash.Problem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Problem settings kept in its directory in JSON, so that the directory can be opened again as a problem.
+ * The fields have the same names as the keys of Problem.getValue, the tests are the files in the directory.
+ */
+class ProblemManifest {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private static final String[] STRING_FIELDS = {
+            "problem_id", "problem_name", "platform_id", "contest_name",
+            "input_file_name", "output_file_name", "checker_compiler_options"
+    };
+
+    static byte[] serialize(Problem problem) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonGenerator generator = FACTORY.createGenerator(bytes)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartObject();
+            for (String field : STRING_FIELDS) {
+                String value = problem.getValue(field, false);
+                generator.writeStringField(field, value != null ? value : "");
+            }
+            generator.writeNumberField("time_limit", problem.getTimeLimit());
+            generator.writeNumberField("memory_limit", problem.getMemoryLimit());
+            generator.writeStringField("test_type", problem.getValue("test_type", false));
+            generator.writeBooleanField("interactive", problem.getInteractive());
+            generator.writeBooleanField("custom_checker", problem.getCustomChecker());
+            generator.writeEndObject();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);  // writing to memory doesn't fail
+        }
+        return bytes.toByteArray();
+    }
+
+    // the problem ID defaults to the directory name, the missing settings get the default values
+    static Problem read(Path file) throws IOException {
+        String directoryName = file.getParent().getFileName().toString();
+        // the problem is created after its identity is known, the other fields are kept as strings until then
+        Map<String, String> fields = new HashMap<>();
+        try (JsonParser parser = FACTORY.createParser(Files.readAllBytes(file))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("expected " + JsonToken.START_OBJECT);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token.isScalarValue()) {
+                    fields.put(field, parser.getValueAsString(""));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException exception) {
+            throw new IOException("Invalid problem file " + file + ": " + exception.getMessage());
+        }
+        Problem problem = new Problem(fields.getOrDefault("problem_id", directoryName),
+                fields.getOrDefault("problem_name", ""),
+                fields.getOrDefault("platform_id", ""),
+                fields.getOrDefault("contest_name", ""));
+        try {
+            if (fields.containsKey("time_limit")) {
+                problem.setTimeLimit(Double.parseDouble(fields.get("time_limit")));
+            }
+            if (fields.containsKey("memory_limit")) {
+                problem.setMemoryLimit(Double.parseDouble(fields.get("memory_limit")));
+            }
+        } catch (NumberFormatException exception) {
+            throw new IOException("Invalid limit in problem file " + file + ": " + exception.getMessage());
+        }
+        problem.setInputFile(fields.getOrDefault("input_file_name", ""));
+        problem.setOutputFile(fields.getOrDefault("output_file_name", ""));
+        problem.setTestType(parseTestType(fields.getOrDefault("test_type", "")));
+        problem.setInteractive(Boolean.parseBoolean(fields.get("interactive")));
+        problem.setCustomChecker(Boolean.parseBoolean(fields.get("custom_checker")));
+        if (fields.containsKey("checker_compiler_options")) {
+            problem.setCheckerParams(fields.get("checker_compiler_options"));
+        }
+        return problem;
+    }
+
+    private static TestType parseTestType(String value) {
+        switch (value) {
+            case "multi_number":
+                return TestType.MULTI_NUMBER;
+            case "multi_eof":
+                return TestType.MULTI_EOF;
+            default:
+                return TestType.SINGLE;
+        }
+    }
+}
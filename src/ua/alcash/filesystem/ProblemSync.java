@@ -1,55 +1,85 @@
 package ua.alcash.filesystem;
 
 import ua.alcash.Configuration;
+import ua.alcash.ExecutionResult;
 import ua.alcash.Problem;
 import ua.alcash.TestCase;
-import ua.alcash.ui.TestsTableModel;
+import ua.alcash.TestCaseStore;
+import ua.alcash.TestContent;
+import ua.alcash.TestSetListener;
+import ua.alcash.util.Hash;
 
-import javax.swing.table.AbstractTableModel;
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
-import static java.nio.file.Files.newBufferedReader;
 import static java.nio.file.StandardWatchEventKinds.*;
 
 /**
  * Created by Al.Cash on 5/25/17.
  */
 public class ProblemSync {
+    private static String manifestFileName;
     private static String testListFileName;
+    private static String statusLogName;
     private static String inputExtension;
     private static String expectedOutputExtension;
     private static String programOutputExtension;
     private static String manualTestName;
-    private static int maxLength;
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
 
     private Problem problem;
     private String directory;
 
-    private ArrayList<TestCase> testCases;
-    private Set<String> testCaseNames = new HashSet<>();
+    private TestCaseStore testCases;
     private int manualTestIndex = 1;
 
-    private TestsTableModel testsTableModel;  // used to notify testsTable about the testCaseSet changes
+    private volatile TestSetListener testsListener = TestSetListener.NONE;  // notified about the testCaseSet changes
+    // the tests are changed and the listener is notified only on this thread, the watcher and the tester read
+    // the files on their own thread and pass the changes to it
+    private volatile Consumer<Runnable> testsThread = Runnable::run;
     private boolean testSetChanged = true;
 
-    private final Set<String> modifiedFiles = new HashSet<>();
+    // file name -> last known state of a tracked file, used to ignore the events that don't change the content
+    private final Map<String, FileFingerprint> fingerprints = new ConcurrentHashMap<>();
+    private final WriteBehindQueue writeQueue = new WriteBehindQueue();
+
+    // sample name -> hash of the sample as it was last received, a sample that differs from it was edited locally
+    private final Map<String, String> receivedSamples = new HashMap<>();
+
+    private byte[] writtenManifest;  // the manifest is written only when the problem settings change
 
     private boolean testsAreRunning = false;
 
+    private StatusLog statusLog;
+    private int runTestCount = -1;  // number of tests in the current run, as reported by the tester
+    private boolean testerConnected = false;
+
     ProblemSync(String workspaceDirectory, Problem problem) {
+        this(problem, getDirectory(workspaceDirectory, problem));
+    }
+
+    // the directory of a restored problem is the one it had, even if the configuration changed since then
+    ProblemSync(Problem problem, String directory) {
         this.problem = problem;
-        directory = Paths.get(workspaceDirectory,
-                substituteKeys(Configuration.get("problem directory"), true)).toString();
+        this.directory = directory;
+        statusLog = new StatusLog(Paths.get(directory, statusLogName));
         testCases = problem.getTestCaseSet();
-        testsTableModel = new TestsTableModel(testCases);
         for (TestCase testCase : testCases) {
-            testCaseNames.add(testCase.getName());
+            receivedSamples.put(testCase.getName(), sampleHash(testCase));
         }
     }
 
@@ -60,176 +90,566 @@ public class ProblemSync {
             createTestCaseFiles(i);
         }
         // add existing test cases from the disk
+        List<String> newTestNames = new ArrayList<>();
         Files.walkFileTree(problemPath, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
                 String fileName = path.getFileName().toString();
                 if (fileName.endsWith(inputExtension)) {
                     String testName = fileName.substring(0, fileName.lastIndexOf("."));
-                    if (!testCaseNames.contains(testName)) {
-                        addTestCaseFromDisk(testName);
+                    if (!testCases.contains(testName)) {
+                        newTestNames.add(testName);
                     }
                 }
                 return FileVisitResult.CONTINUE;
             }
         });
+        addTestCasesFromDisk(newTestNames);
+        testsListChanged();
+        saveManifest();
+        await(writeQueue.drain());
+    }
+
+    // reads the problem settings from the manifest of the directory, or uses the defaults if there is none
+    static ProblemSync open(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Directory doesn't exist: " + directory);
+        }
+        Path manifest = directory.resolve(manifestFileName);
+        Problem problem = Files.exists(manifest) ? ProblemManifest.read(manifest)
+                : new Problem(directory.getFileName().toString(), "", "", "");
+        return new ProblemSync(problem, directory.toString());
+    }
+
+    CompletableFuture<Void> saveManifest() {
+        byte[] manifest = ProblemManifest.serialize(problem);
+        if (Arrays.equals(manifest, writtenManifest)) {
+            return DONE;
+        }
+        writtenManifest = manifest;
+        return writeQueue.submit(manifestFileName, () -> writeBytes(manifestFileName, manifest));
+    }
+
+    // decodes the previews of the restored tests on a background thread, so that the table doesn't wait for them
+    void loadPreviewsInBackground() {
+        List<TestContent> contents = new ArrayList<>();
+        for (TestCase testCase : testCases) {
+            contents.add(testCase.getInput());
+            contents.add(testCase.getExpectedOutput());
+            contents.add(testCase.getProgramOutput());
+        }
+        CompletableFuture.runAsync(() -> {
+            for (TestContent content : contents) {
+                try {
+                    content.getPreview();
+                } catch (UncheckedIOException ignored) {  // the table will report it if the file is displayed
+                }
+            }
+        });
+    }
+
+    // restores the tests of a problem that was open in the previous session or of a reopened problem directory:
+    // the order, the skipped tests and the results are taken from the tests list file,
+    // and the test files are read only when displayed
+    void restore() throws IOException {
+        Map<String, FileFingerprint> onDisk = listTrackedFiles();
+        fingerprints.putAll(onDisk);
+        Map<String, ExecutionResult> results = new LinkedHashMap<>();
+        if (onDisk.containsKey(testListFileName)) {
+            for (String line : Files.readAllLines(Paths.get(directory, testListFileName))) {
+                String[] tokens = line.split(" ", 2);
+                if (onDisk.containsKey(tokens[0] + inputExtension)) {
+                    ExecutionResult result = ExecutionResult.parse(tokens.length == 2 ? tokens[1] : "");
+                    // the run was interrupted when the application was closed
+                    if (result == ExecutionResult.PENDING || result == ExecutionResult.RUNNING) {
+                        result = ExecutionResult.UNKNOWN;
+                    }
+                    results.put(tokens[0], result);
+                }
+            }
+        }
+        List<String> newTestNames = new ArrayList<>();
+        for (String fileName : onDisk.keySet()) {
+            if (getTestFileType(fileName) == 0) {
+                String testName = fileName.substring(0, fileName.lastIndexOf("."));
+                if (!results.containsKey(testName)) {
+                    newTestNames.add(testName);
+                }
+            }
+        }
+        Collections.sort(newTestNames);
+        for (String name : newTestNames) {
+            results.put(name, ExecutionResult.UNKNOWN);
+        }
+        for (Map.Entry<String, ExecutionResult> entry : results.entrySet()) {
+            String name = entry.getKey();
+            TestCase testCase = new TestCase(name,
+                    restoreFile(onDisk, name + inputExtension),
+                    restoreFile(onDisk, name + expectedOutputExtension));
+            testCase.setProgramOutput(restoreFile(onDisk, name + programOutputExtension));
+            testCase.setExecutionResult(entry.getValue());
+            testCases.add(testCase);
+        }
+        testSetChanged = true;
+        testsListener.testCasesAdded(results.size());
+        // the missing files are created in the background, an archive can have thousands of tests without answers
         testsListChanged();
-        modifiedFiles.clear();
+    }
+
+    private TestContent restoreFile(Map<String, FileFingerprint> onDisk, String fileName) {
+        if (!onDisk.containsKey(fileName)) {
+            writeToFile(fileName, "");
+            return TestContent.EMPTY;
+        }
+        return new FileTestContent(Paths.get(directory, fileName));
+    }
+
+    // attributes of the test files and the tests list file, the files aren't read
+    private Map<String, FileFingerprint> listTrackedFiles() throws IOException {
+        Map<String, FileFingerprint> result = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(directory))) {
+            for (Path path : stream) {
+                String fileName = path.getFileName().toString();
+                if (getTestFileType(fileName) == -1 && !fileName.equals(testListFileName)) continue;
+                try {
+                    result.put(fileName, FileFingerprint.read(path, null));
+                } catch (NoSuchFileException ignored) {
+                }
+            }
+        }
+        return result;
     }
 
     static void configure() {
         Problem.configure();
+        TestContent.configure();
+        manifestFileName = Configuration.get("problem manifest file");
         testListFileName = Configuration.get("test list file");
+        statusLogName = Configuration.get("test status log");
         inputExtension = "." + Configuration.getExtension("input");
         expectedOutputExtension = "." + Configuration.getExtension("expected output");
         programOutputExtension = "." + Configuration.getExtension("program output");
         manualTestName = Configuration.get("test manual");
-        maxLength = Integer.parseInt(Configuration.get("test maximum loaded length"));
     }
 
     public Problem getProblem() { return problem; }
 
     public String getDirectory() { return directory; }
 
-    public AbstractTableModel getTableModel() { return testsTableModel; }
+    public TestCaseStore getTestCaseSet() { return testCases; }
+
+    public void setTestsListener(TestSetListener listener) { testsListener = listener; }
+
+    void setTestsThread(Consumer<Runnable> testsThread) { this.testsThread = testsThread; }
+
+    private interface TestsAction<T> {
+        T run() throws IOException;
+    }
+
+    // runs the action on the tests thread and waits for its result
+    private <T> T onTestsThread(TestsAction<T> action) throws IOException {
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<IOException> error = new AtomicReference<>();
+        testsThread.accept(() -> {
+            try {
+                result.set(action.run());
+            } catch (IOException exception) {
+                error.set(exception);
+            }
+        });
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return result.get();
+    }
 
     public TestCase getTestCase(int index) { return testCases.get(index); }
 
     public String getNextTestName() {
-        while (testCaseNames.contains(manualTestName + manualTestIndex)) {
+        while (testCases.contains(manualTestName + manualTestIndex)) {
             ++manualTestIndex;
         }
         return manualTestName + manualTestIndex;
     }
 
-    public void addTestCase(TestCase testCase, boolean createFiles) throws IOException {
+    public CompletableFuture<Void> addTestCase(TestCase testCase, boolean createFiles) throws IOException {
         checkNotRunning();
         testSetChanged = true;
         int index = testCases.size();
         testCases.add(testCase);
-        testCaseNames.add(testCase.getName());
-        testsTableModel.testCaseAdded();
-        if (createFiles) {
-            createTestCaseFiles(index);
+        testsListener.testCaseAdded();
+        CompletableFuture<Void> filesCreated = createFiles ? createTestCaseFiles(index) : DONE;
+        return CompletableFuture.allOf(filesCreated, testsListChanged());
+    }
+
+    // applies limits and samples of the same problem received again, keeping everything else;
+    // the samples edited since they were received aren't replaced, the future returns their names
+    CompletableFuture<List<String>> mergeProblem(Problem update) throws IOException {
+        problem.setTimeLimit(update.getTimeLimit());
+        problem.setMemoryLimit(update.getMemoryLimit());
+        problem.setInputFile(update.getInputFile());
+        problem.setOutputFile(update.getOutputFile());
+        problem.setTestType(update.getTestType());
+        List<CompletableFuture<Void>> changes = new ArrayList<>();
+        List<String> editedSamples = new ArrayList<>();
+        for (TestCase sample : update.getTestCaseSet()) {
+            String hash = sampleHash(sample);
+            int index = testCases.indexOf(sample.getName());
+            if (index == -1) {
+                changes.add(addTestCase(sample, true));
+                receivedSamples.put(sample.getName(), hash);
+                continue;
+            }
+            TestCase testCase = testCases.get(index);
+            // a test grown too large to edit isn't a sample anymore, and it isn't read whole
+            if (!testCase.getInput().isEditable() || !testCase.getExpectedOutput().isEditable()) {
+                editedSamples.add(sample.getName());
+                continue;
+            }
+            String currentHash = sampleHash(testCase);
+            if (currentHash.equals(hash)) {
+                receivedSamples.put(sample.getName(), hash);
+                continue;
+            }
+            // samples of a problem restored from the disk weren't received in this session, so they are kept too
+            if (!currentHash.equals(receivedSamples.get(sample.getName()))) {
+                editedSamples.add(sample.getName());
+                continue;
+            }
+            if (!testCase.getInput().hasText(sample.getInput().getText())) {
+                testCase.setInput(sample.getInput());
+                changes.add(testInputChanged(index));
+            }
+            if (!testCase.getExpectedOutput().hasText(sample.getExpectedOutput().getText())) {
+                testCase.setExpectedOutput(sample.getExpectedOutput());
+                changes.add(testAnswerChanged(index));
+            }
+            receivedSamples.put(sample.getName(), hash);
         }
-        testsListChanged();
+        return CompletableFuture.allOf(changes.toArray(new CompletableFuture<?>[0])).thenApply(done -> editedSamples);
     }
 
-    private void addTestCaseFromDisk(String name) throws IOException {
-        TestCase testCase = new TestCase(name,
-                readFromFile(name + inputExtension),
-                readFromFile(name + expectedOutputExtension));
-        testCase.setProgramOutput(readFromFile(name + programOutputExtension));
-        addTestCase(testCase, false);
+    private static String sampleHash(TestCase testCase) {
+        return Hash.of(testCase.getInput().getText().getBytes(StandardCharsets.UTF_8))
+                + Hash.of(testCase.getExpectedOutput().getText().getBytes(StandardCharsets.UTF_8));
     }
 
-    private String readFromFile(String fileName) throws IOException {
-        Path path = Paths.get(directory, fileName);
-        if (!Files.exists(path)) {
-            writeToFile(fileName, "");
-            return "";
+    // reads the tests in parallel and adds them in the order of names, the tests which are already known are skipped;
+    // returns the number of added tests, the tests list file isn't updated
+    private int addTestCasesFromDisk(List<String> names) throws IOException {
+        if (names.isEmpty()) {
+            return 0;
+        }
+        Collections.sort(names);
+        String[] extensions = {inputExtension, expectedOutputExtension, programOutputExtension};
+        TestContent[][] data = new TestContent[names.size()][extensions.length];
+        try {
+            IntStream.range(0, data.length * extensions.length).parallel().forEach(index -> {
+                int test = index / extensions.length;
+                int file = index % extensions.length;
+                try {
+                    data[test][file] = readExistingFile(names.get(test) + extensions[file]);
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            });
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+        return onTestsThread(() -> {
+            checkNotRunning();
+            int added = 0;
+            // missing files are created after all the reads are finished
+            for (int test = 0; test < data.length; ++test) {
+                if (testCases.contains(names.get(test))) continue;
+                for (int file = 0; file < extensions.length; ++file) {
+                    data[test][file] = orEmptyFile(names.get(test) + extensions[file], data[test][file]);
+                }
+                TestCase testCase = new TestCase(names.get(test), data[test][0], data[test][1]);
+                testCase.setProgramOutput(data[test][2]);
+                testCases.add(testCase);
+                ++added;
+            }
+            if (added > 0) {
+                testSetChanged = true;
+                testsListener.testCasesAdded(added);
+            }
+            return added;
+        });
+    }
+
+    // adds tests from a directory or an archive, tests with existing names are overwritten;
+    // runs on the event thread of the problem, so that the watcher sees the copied files after they are recorded
+    void importTests(Path source) throws IOException {
+        Set<String> knownNames = onTestsThread(() -> {
+            checkNotRunning();
+            return getTestNames();
+        });
+        await(writeQueue.drain());  // waiting changes must not overwrite imported files
+        Set<String> importedNames = new TreeSet<>();
+        TestArchive.EntryHandler handler = (fileName, data) -> {
+            if (fileName.endsWith(inputExtension) || fileName.endsWith(expectedOutputExtension)) {
+                copyToFile(fileName, data);
+                importedNames.add(fileName.substring(0, fileName.lastIndexOf(".")));
+            }
+        };
+        if (TestArchive.isArchive(source)) {
+            TestArchive.read(source, handler);
         } else {
-            int fileSize = (int) new File(path.toString()).length();
-            char[] data = new char[Math.min(fileSize, maxLength)];
-            BufferedReader reader = newBufferedReader(path, StandardCharsets.UTF_8);
-            fileSize = reader.read(data, 0, data.length);
-            String result = new String(data, 0, fileSize);
-            if (fileSize == maxLength) {
-                result += "...";
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(source)) {
+                for (Path path : stream) {
+                    if (Files.isRegularFile(path)) {
+                        try (InputStream data = Files.newInputStream(path)) {
+                            handler.handle(path.getFileName().toString(), data);
+                        }
+                    }
+                }
             }
-            return result;
         }
+        Map<String, TestContent[]> updated = new HashMap<>();
+        List<String> newTestNames = new ArrayList<>();
+        for (String name : importedNames) {
+            if (knownNames.contains(name)) {
+                updated.put(name, new TestContent[]{
+                        readFromFile(name + inputExtension), readFromFile(name + expectedOutputExtension)});
+            } else {
+                newTestNames.add(name);
+            }
+        }
+        onTestsThread(() -> {
+            for (Map.Entry<String, TestContent[]> entry : updated.entrySet()) {
+                int index = testCases.indexOf(entry.getKey());
+                if (index == -1) continue;  // the test was deleted meanwhile
+                testCases.get(index).setInput(entry.getValue()[0]);
+                testCases.get(index).setExpectedOutput(entry.getValue()[1]);
+                testsListener.testCaseUpdated(index);
+            }
+            return null;
+        });
+        addTestCasesFromDisk(newTestNames);
+        await(onTestsThread(this::testsListChanged));
     }
 
-    private void writeToFile(String fileName, String data) throws IOException {
-        synchronized (modifiedFiles) {
-            modifiedFiles.add(fileName);
+    private TestContent readFromFile(String fileName) throws IOException {
+        return orEmptyFile(fileName, readExistingFile(fileName));
+    }
+
+    // a missing file is created empty
+    private TestContent orEmptyFile(String fileName, TestContent content) {
+        if (content == null) {
+            writeToFile(fileName, "");
+            return TestContent.EMPTY;
+        }
+        return content;
+    }
+
+    // returns null if the file doesn't exist
+    private TestContent readExistingFile(String fileName) throws IOException {
+        Path path = Paths.get(directory, fileName);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        // the attributes are recorded before the data is read, so that a concurrent change isn't missed by a rescan
+        try {
+            fingerprints.putIfAbsent(fileName, FileFingerprint.read(path, null));
+        } catch (NoSuchFileException exception) {
+            return null;
         }
-        Path inputFile = Paths.get(directory, fileName);
-        Files.write(inputFile, data.getBytes());
+        TestContent content = new FileTestContent(path);
+        // the preview is decoded here, so that the table doesn't read the disk
+        try {
+            content.getPreview();
+        } catch (UncheckedIOException exception) {
+            throw exception.getCause();
+        }
+        return content;
+    }
+
+    private CompletableFuture<Void> writeToFile(String fileName, String data) {
+        return writeQueue.submit(fileName, () -> writeBytes(fileName, data.getBytes()));
     }
 
-    public void testInputChanged(int index) throws IOException {
-        testsTableModel.testCaseUpdated(index);
-        writeToFile(testCases.get(index).getName() + inputExtension, testCases.get(index).getInput());
+    // the expected fingerprint is registered first, so that the events caused by the write are recognized;
+    // after the write the events compare the file with the written data, so that a change made since then is loaded
+    private void writeBytes(String fileName, byte[] data) throws IOException {
+        Path path = Paths.get(directory, fileName);
+        FileFingerprint expected = FileFingerprint.expected(data);
+        fingerprints.put(fileName, expected);
+        Files.write(path, data);
+        fingerprints.replace(fileName, expected, expected.written());
+    }
+
+    // imported files are written immediately, because they are read right after;
+    // the hash is computed from the copied data, not from the file
+    private void copyToFile(String fileName, InputStream data) throws IOException {
+        Path path = Paths.get(directory, fileName);
+        MessageDigest digest = Hash.newDigest();
+        long size = Files.copy(new DigestInputStream(data, digest), path, StandardCopyOption.REPLACE_EXISTING);
+        fingerprints.put(fileName, FileFingerprint.written(size, Hash.toHex(digest.digest())));
     }
 
-    public void testAnswerChanged(int index) throws IOException {
-        testsTableModel.testCaseUpdated(index);
-        writeToFile(testCases.get(index).getName() + expectedOutputExtension,
-                testCases.get(index).getExpectedOutput());
+    public CompletableFuture<Void> testInputChanged(int index) {
+        testsListener.testCaseUpdated(index);
+        return writeToFile(testCases.get(index).getName() + inputExtension,
+                testCases.get(index).getInput().getText());
     }
 
-    private void createTestCaseFiles(int index) throws IOException {
-        testInputChanged(index);
-        testAnswerChanged(index);
-        writeToFile(testCases.get(index).getName() + programOutputExtension, "");
+    public CompletableFuture<Void> testAnswerChanged(int index) {
+        testsListener.testCaseUpdated(index);
+        return writeToFile(testCases.get(index).getName() + expectedOutputExtension,
+                testCases.get(index).getExpectedOutput().getText());
     }
 
-    public void setTestSolved(int index) throws IOException {
+    private CompletableFuture<Void> createTestCaseFiles(int index) {
+        return CompletableFuture.allOf(
+                testInputChanged(index),
+                testAnswerChanged(index),
+                writeToFile(testCases.get(index).getName() + programOutputExtension, ""));
+    }
+
+    public CompletableFuture<Void> setTestSolved(int index) {
         TestCase testCase = testCases.get(index);
         String name = testCase.getName();
-        synchronized (modifiedFiles) {
-            modifiedFiles.add(name + expectedOutputExtension);
-        }
-        Files.copy(Paths.get(directory, name + programOutputExtension),
-                Paths.get(directory, name + expectedOutputExtension),
-                StandardCopyOption.REPLACE_EXISTING);
-        testCase.setExpectedOutput(testCase.getProgramOutput());
-        testsTableModel.testCaseUpdated(index);
+        Path programOutput = Paths.get(directory, name + programOutputExtension);
+        // the answer file will contain the program output, so they have the same preview
+        testCase.setExpectedOutput(new FileTestContent(Paths.get(directory, name + expectedOutputExtension),
+                testCase.getProgramOutput().getPreview()));
+        testsListener.testCaseUpdated(index);
+        return writeQueue.submit(name + expectedOutputExtension,
+                () -> writeBytes(name + expectedOutputExtension, Files.readAllBytes(programOutput)));
     }
 
-    public void flipTestSkipped(int index) throws IOException {
+    public CompletableFuture<Void> flipTestSkipped(int index) throws IOException {
         checkNotRunning();
         testCases.get(index).flipSkipped();
-        testsTableModel.testCaseUpdated(index);
-        testsListChanged();
+        testsListener.testCaseUpdated(index);
+        return testsListChanged();
     }
 
-    public void swapTestCases(int index1, int index2) throws IOException {
+    public CompletableFuture<Void> swapTestCases(int index1, int index2) throws IOException {
         checkNotRunning();
-        Collections.swap(testCases, index1, index2);
-        testsTableModel.testCaseUpdated(index1);
-        testsTableModel.testCaseUpdated(index2);
-        testsListChanged();
+        testCases.swap(index1, index2);
+        testsListener.testCaseUpdated(index1);
+        testsListener.testCaseUpdated(index2);
+        return testsListChanged();
     }
 
-    private void deleteFile(String fileName) throws IOException {
-        synchronized (modifiedFiles) {
-            modifiedFiles.add(fileName);
-        }
-        Files.delete(Paths.get(directory, fileName));
+    private CompletableFuture<Void> deleteFile(String fileName) {
+        Path path = Paths.get(directory, fileName);
+        return writeQueue.submit(fileName, () -> {
+            fingerprints.put(fileName, FileFingerprint.DELETED);
+            Files.delete(path);
+        });
     }
 
-    public void deleteTestCase(int index, boolean deleteFiles) throws IOException {
+    public CompletableFuture<Void> deleteTestCase(int index, boolean deleteFiles) throws IOException {
         checkNotRunning();
         testSetChanged = true;
         String name = testCases.get(index).getName();
-        testCaseNames.remove(name);
         testCases.remove(index);
-        testsTableModel.testCaseDeleted(index);
-        testsListChanged();
-        if (deleteFiles) {
-            deleteFile(name + inputExtension);
-            deleteFile(name + expectedOutputExtension);
-            deleteFile(name + programOutputExtension);
+        testsListener.testCaseDeleted(index);
+        CompletableFuture<Void> listChanged = testsListChanged();
+        if (!deleteFiles) {
+            return listChanged;
         }
+        return CompletableFuture.allOf(listChanged,
+                deleteFile(name + inputExtension),
+                deleteFile(name + expectedOutputExtension),
+                deleteFile(name + programOutputExtension));
     }
 
     private void checkNotRunning() throws IOException {
         if (testsAreRunning) throw new IOException("Cannot perform an action when tests are running.");
     }
 
-    private void testsListChanged() throws IOException {
+    private CompletableFuture<Void> testsListChanged() {
         StringBuilder builder = new StringBuilder();
         for (TestCase testCase : testCases) {
-            builder.append(String.join(" ", testCase.getName(), testCase.getExecutionResults(" ")));
+            builder.append(testCase.getName()).append(' ').append(testCase.getExecutionResult());
             builder.append("\n");
         }
-        writeToFile(testListFileName, builder.toString());
+        return writeToFile(testListFileName, builder.toString());
+    }
+
+    // waits for the changes on a thread that is not the UI thread, or when the result is needed right away
+    private static void await(CompletableFuture<Void> future) throws IOException {
+        try {
+            future.join();
+        } catch (CompletionException exception) {
+            Throwable cause = exception.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    // applies all the waiting changes and stops the background thread
+    // the future is completed when the queued changes are written
+    CompletableFuture<Void> close() { return writeQueue.shutdown(); }
+
+    private void statusLogChanged() throws IOException {
+        List<StatusLog.Record> records = statusLog.readNewRecords();
+        // while the tester is connected, the records from the log are already received
+        if (!testerConnected) {
+            for (StatusLog.Record record : records) {
+                statusRecordReceived(record);
+            }
+        }
+    }
+
+    boolean isTestsListFile(Path path) {
+        try {
+            return Files.isSameFile(path, Paths.get(directory, testListFileName));
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+    void testerConnected() { testerConnected = true; }
+
+    void testerDisconnected() throws IOException {
+        testerConnected = false;
+        statusLog.readNewRecords();  // skip the records that were already received
+        List<String> lines = readTestsListLines();
+        onTestsThread(() -> {
+            if (runTestCount != -1) {  // the tester was terminated in the middle of the run
+                runTestCount = -1;
+                applyTestsList(lines);
+            }
+            return null;
+        });
+    }
+
+    void statusRecordReceived(StatusLog.Record record) throws IOException {
+        // final results contain checker messages, and the tests list file change may not be signalled
+        List<String> lines = record.verdict == StatusLog.RUN_FINISHED ? readTestsListLines() : null;
+        onTestsThread(() -> {
+            if (record.verdict == StatusLog.RUN_STARTED) {
+                testsAreRunning = true;
+                runTestCount = record.testIndex;
+                for (int i = 0; i < testCases.size(); ++i) {
+                    if (!testCases.get(i).isSkipped()) {
+                        updateExecutionResult(i, ExecutionResult.PENDING);
+                    }
+                }
+            } else if (record.verdict == StatusLog.RUN_FINISHED) {
+                runTestCount = -1;
+                applyTestsList(lines);
+            } else if (runTestCount == testCases.size()
+                    && record.testIndex >= 0 && record.testIndex < runTestCount) {
+                updateExecutionResult(record.testIndex, record.toExecutionResult());
+            }
+            return null;
+        });
+    }
+
+    // only the rows with changed results are repainted
+    private void updateExecutionResult(int index, ExecutionResult executionResult) {
+        if (testCases.get(index).setExecutionResult(executionResult)) {
+            testsListener.executionResultsUpdated(index);
+        }
     }
 
     void deleteFromDisk() throws IOException {
+        await(writeQueue.drain());
         Files.walkFileTree(Paths.get(directory), new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
@@ -245,102 +665,223 @@ public class ProblemSync {
         });
     }
 
-    boolean fileChanged(final WatchEvent.Kind kind, String fileName) throws IOException {
-        synchronized (modifiedFiles) {
-            if (modifiedFiles.contains(fileName)) {
-                modifiedFiles.remove(fileName);
+    // returns true if the event doesn't change the content of the file
+    private boolean isUnchanged(WatchEvent.Kind<?> kind, String fileName) throws IOException {
+        FileFingerprint known = fingerprints.get(fileName);
+        if (kind == ENTRY_DELETE) {
+            fingerprints.remove(fileName);
+            return known == FileFingerprint.DELETED;
+        }
+        if (known != null && known.isWriting()) {  // our write is in progress
+            return true;
+        }
+        Path path = Paths.get(directory, fileName);
+        FileFingerprint current;
+        try {
+            current = FileFingerprint.read(path, null);
+        } catch (NoSuchFileException exception) {  // deletion will be signalled separately
+            return true;
+        }
+        if (known != null && known != FileFingerprint.DELETED && known.hasSameAttributes(current)) {
+            return true;
+        }
+        current = current.withHash(Hash.of(path));
+        fingerprints.put(fileName, current);
+        return known != null && current.hash.equals(known.hash);
+    }
+
+    // returns null if the file doesn't exist
+    private List<String> readTestsListLines() throws IOException {
+        try {
+            return Files.readAllLines(Paths.get(directory, testListFileName));
+        } catch (NoSuchFileException exception) {
+            return null;
+        }
+    }
+
+    // returns false if the tests list file doesn't match the tests
+    private boolean applyTestsList(List<String> lines) {
+        testsAreRunning = runTestCount != -1;
+        if (lines == null || lines.size() != testCases.size()) {
+            return false;
+        }
+        for (int i = 0; i < lines.size(); ++i) {
+            String[] tokens = lines.get(i).split(" ", 2);
+            if (tokens.length != 2 || !tokens[0].equals(testCases.get(i).getName())) {
+                return false;
+            }
+            // results are parsed only here, the table shows them without any string processing
+            updateExecutionResult(i, ExecutionResult.parse(tokens[1]));
+            if (testCases.get(i).isRunning()) {
+                testsAreRunning = true;
+            }
+        }
+        return true;
+    }
+
+    // 0 for input, 1 for expected output, 2 for program output, -1 if it's not a test file
+    private static int getTestFileType(String fileName) {
+        if (fileName.endsWith(inputExtension)) {
+            return 0;
+        } else if (fileName.endsWith(expectedOutputExtension)) {
+            return 1;
+        } else if (fileName.endsWith(programOutputExtension)) {
+            return 2;
+        }
+        return -1;
+    }
+
+    boolean fileChanged(final WatchEvent.Kind<?> kind, String fileName) throws IOException {
+        if (fileName.equals(statusLogName)) {  // tester progress
+            if (kind == ENTRY_DELETE) {
+                statusLog.reset();
+            } else {
+                statusLogChanged();
+            }
+            return true;
+        }
+        int type = getTestFileType(fileName);
+        if (type == -1 && !fileName.equals(testListFileName)) {  // not a tracked file
+            return true;
+        }
+        if (isUnchanged(kind, fileName)) {
+            return true;
+        }
+        if (fileName.equals(testListFileName)) {  // tests list file change
+            if (kind == ENTRY_CREATE) {
+                return false;
+            } else if (kind == ENTRY_MODIFY) {
+                List<String> lines = readTestsListLines();
+                return onTestsThread(() -> applyTestsList(lines));
+            } else {  // ENTRY_DELETE
+                await(onTestsThread(() -> {
+                    testsAreRunning = runTestCount != -1;
+                    return testsListChanged();
+                }));
                 return true;
             }
-            if (fileName.equals(testListFileName)) {  // tests list file change
-                testsAreRunning = false;
-                if (kind == ENTRY_CREATE) {
-                    return false;
-                } else if (kind == ENTRY_MODIFY) {
-                    List<String> lines = Files.readAllLines(Paths.get(directory, fileName));
-                    if (lines.size() != testCases.size()) {
-                        return false;
-                    }
-                    for (int i = 0; i < lines.size(); ++i) {
-                        String[] tokens = lines.get(i).split(" ", 2);
-                        if (tokens.length != 2 || !tokens[0].equals(testCases.get(i).getName())) {
-                            return false;
-                        }
-                        testCases.get(i).setExecutionResults(tokens[1]);
-                        if (testCases.get(i).isRunning()) {
-                            testsAreRunning = true;
-                        }
-                    }
-                    testsTableModel.executionResultsUpdated();
-                } else {  // ENTRY_DELETE
-                    testsListChanged();
-                }
-            } else {  // other file change
-                int type = -1;
-                if (fileName.endsWith(inputExtension)) {
-                    type = 0;
-                } else if (fileName.endsWith(expectedOutputExtension)) {
-                    type = 1;
-                } else if (fileName.endsWith(programOutputExtension)) {
-                    type = 2;
-                }
-                if (type == -1) {  // not a test file
-                    return true;
-                }
-                String testName = fileName.substring(0, fileName.lastIndexOf("."));
-                if (!testCaseNames.contains(testName)) {  // unknown test case file change
-                    if (type != 0) {
-                        return true;
-                    }
-                    if (kind == ENTRY_CREATE) {
-                        addTestCaseFromDisk(testName);
-                    } else {
-                        return false;
-                    }
-                } else {  // known test case file change
-                    int testIndex = 0;
-                    for (; !testCases.get(testIndex).getName().equals(testName); ++testIndex);
-                    TestCase testCase = testCases.get(testIndex);
-                    if (kind == ENTRY_CREATE) {
-                        return false;
-                    } else if (kind == ENTRY_MODIFY) {
-                        String data = readFromFile(fileName);
-                        switch (type) {
-                            case 0:
-                                testCase.setInput(data);
-                                break;
-                            case 1:
-                                testCase.setExpectedOutput(data);
-                                break;
-                            case 2:
-                                testCase.setProgramOutput(data);
-                                break;
-                        }
-                        testsTableModel.testCaseUpdated(testIndex);
-                        // tests list file change may not be signalled after the last test case,
-                        // so we manually signal it
-                        if (testIndex + 1 == testCases.size()) {
-                            fileChanged(ENTRY_MODIFY, testListFileName);
-                        }
-                    } else {  // ENTRY_DELETE
-                        if (type == 0) {
-                            deleteTestCase(testIndex, false);
-                        } else {
-                            if (type == 1) {
-                                testCase.setExpectedOutput("");
-                            } else {
-                                testCase.setProgramOutput("");
-                            }
-                            testsTableModel.testCaseUpdated(testIndex);
-                            writeToFile(fileName, "");
-                        }
-                    }
-                }
+        }
+        // test file change, the files are read before the tests are looked up
+        String testName = fileName.substring(0, fileName.lastIndexOf("."));
+        if (kind == ENTRY_CREATE) {
+            if (type != 0) {  // a file of a known test can't be created
+                return !onTestsThread(() -> testCases.contains(testName));
+            }
+            if (addTestCasesFromDisk(Collections.singletonList(testName)) == 0) {
+                return false;
             }
+            await(onTestsThread(this::testsListChanged));
             return true;
         }
+        TestContent data = kind == ENTRY_MODIFY ? readExistingFile(fileName) : null;
+        // null means that the change is unexpected
+        CompletableFuture<Void> written = onTestsThread(() -> {
+            int testIndex = testCases.indexOf(testName);
+            if (testIndex == -1) {  // unknown test case file change
+                return type != 0 ? DONE : null;
+            }
+            TestCase testCase = testCases.get(testIndex);
+            if (kind == ENTRY_MODIFY) {
+                TestContent content = orEmptyFile(fileName, data);
+                switch (type) {
+                    case 0:
+                        testCase.setInput(content);
+                        break;
+                    case 1:
+                        testCase.setExpectedOutput(content);
+                        break;
+                    case 2:
+                        testCase.setProgramOutput(content);
+                        break;
+                }
+                testsListener.testCaseUpdated(testIndex);
+                return DONE;
+            }
+            // ENTRY_DELETE
+            if (type == 0) {
+                return deleteTestCase(testIndex, false);
+            }
+            if (type == 1) {
+                testCase.setExpectedOutput("");
+            } else {
+                testCase.setProgramOutput("");
+            }
+            testsListener.testCaseUpdated(testIndex);
+            return writeToFile(fileName, "");
+        });
+        if (written == null) {
+            return false;
+        }
+        await(written);
+        return true;
+    }
+
+    private Set<String> getTestNames() {
+        Set<String> result = new HashSet<>();
+        for (TestCase testCase : testCases) {
+            result.add(testCase.getName());
+        }
+        return result;
+    }
+
+    // compares the directory with the known file states, and applies the changes whose events were lost;
+    // only the files with changed attributes are read
+    void reconcile() throws IOException {
+        statusLogChanged();
+        Set<String> testNames = onTestsThread(this::getTestNames);
+        // inputs are deleted first, so that the other files of a deleted test aren't recreated
+        List<String> deleted = new ArrayList<>();
+        List<String> modified = new ArrayList<>();
+        List<String> newTestNames = new ArrayList<>();
+        Map<String, FileFingerprint> onDisk = listTrackedFiles();
+        for (Map.Entry<String, FileFingerprint> entry : fingerprints.entrySet()) {
+            if (!onDisk.containsKey(entry.getKey()) && !entry.getValue().isWriting()) {
+                deleted.add(entry.getKey());
+            }
+        }
+        for (Map.Entry<String, FileFingerprint> entry : onDisk.entrySet()) {
+            String fileName = entry.getKey();
+            FileFingerprint known = fingerprints.get(fileName);
+            if (known != null && (known.isWriting() || known.hasSameAttributes(entry.getValue()))) continue;
+            if (fileName.equals(testListFileName)
+                    || testNames.contains(fileName.substring(0, fileName.lastIndexOf(".")))) {
+                modified.add(fileName);
+            } else if (getTestFileType(fileName) == 0) {
+                fingerprints.remove(fileName);  // the file was deleted by us and created again
+                newTestNames.add(fileName.substring(0, fileName.lastIndexOf(".")));
+            }
+        }
+        deleted.sort(Comparator.comparing(fileName -> getTestFileType(fileName) != 0));
+
+        List<String> unexpected = new ArrayList<>();
+        for (String fileName : deleted) {
+            if (!fileChanged(ENTRY_DELETE, fileName)) {
+                unexpected.add(fileName);
+            }
+        }
+        for (String fileName : modified) {
+            if (!fileChanged(ENTRY_MODIFY, fileName)) {
+                unexpected.add(fileName);
+            }
+        }
+        if (addTestCasesFromDisk(newTestNames) > 0) {
+            await(onTestsThread(this::testsListChanged));
+        }
+        if (!unexpected.isEmpty()) {
+            throw new IOException("Unexpected changes were observed in files " + String.join(", ", unexpected));
+        }
+    }
+
+    static String getDirectory(String workspaceDirectory, Problem problem) {
+        return Paths.get(workspaceDirectory,
+                substituteKeys(Configuration.get("problem directory"), problem, null, true)).toString();
     }
 
     String substituteKeys(String input, boolean namesOnly) {
+        return substituteKeys(input, problem, directory, namesOnly);
+    }
+
+    private static String substituteKeys(String input, Problem problem, String directory, boolean namesOnly) {
         String[] tokens = input.split("@");
         for (int i = 1; i < tokens.length; i += 2) {
             tokens[i] = tokens[i].equals("problem_dir") ? directory : problem.getValue(tokens[i], namesOnly);
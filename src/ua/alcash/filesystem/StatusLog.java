@@ -0,0 +1,146 @@
+package ua.alcash.filesystem;
+
+import ua.alcash.ExecutionResult;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only log of fixed size records, which the tester writes during the run.
+ * Only the records appended since the previous read are read, so each test costs O(1) on both sides.
+ * The log starts with RUN_STARTED record, which holds the ID of the run in place of the memory,
+ * so that a rewritten log is recognized even if it has grown past the previous read offset.
+ * The same records are also sent by the tester to TesterListener, if it's running.
+ * The record layout and verdict codes must match StatusRecord in tester.cpp.
+ */
+class StatusLog {
+    static final int RUN_STARTED = 0;
+    static final int RUNNING = 1;
+    static final int OK = 2;
+    static final int WRONG_ANSWER = 3;
+    static final int RUNTIME_ERROR = 4;
+    static final int TIME_LIMIT_EXCEEDED = 5;
+    static final int JUDGEMENT_ERROR = 6;
+    static final int NO_ANSWER = 7;
+    static final int RUN_FINISHED = 8;
+
+    private static final int RECORD_SIZE = 32;
+
+    static class Record {
+        final int testIndex;
+        final int verdict;
+        final double wallTime;  // seconds
+        final double cpuTime;  // seconds
+        final long memory;  // kilobytes
+
+        private Record(ByteBuffer buffer) {
+            testIndex = buffer.getInt();
+            verdict = buffer.getInt();
+            wallTime = buffer.getDouble();
+            cpuTime = buffer.getDouble();
+            memory = buffer.getLong();
+        }
+
+        ExecutionResult toExecutionResult() {
+            ExecutionResult.Verdict resultVerdict;
+            switch (verdict) {
+                case RUNNING:
+                    return ExecutionResult.RUNNING;
+                case OK:
+                    resultVerdict = ExecutionResult.Verdict.OK;
+                    break;
+                case WRONG_ANSWER:
+                    resultVerdict = ExecutionResult.Verdict.WRONG_ANSWER;
+                    break;
+                case RUNTIME_ERROR:
+                    resultVerdict = ExecutionResult.Verdict.RUNTIME_ERROR;
+                    break;
+                case TIME_LIMIT_EXCEEDED:
+                    resultVerdict = ExecutionResult.Verdict.TIME_LIMIT_EXCEEDED;
+                    break;
+                case JUDGEMENT_ERROR:
+                    resultVerdict = ExecutionResult.Verdict.JUDGEMENT_ERROR;
+                    break;
+                default:
+                    resultVerdict = ExecutionResult.Verdict.UNKNOWN;
+            }
+            // checker messages are read from the tests list file when the run is finished
+            return new ExecutionResult(resultVerdict, wallTime, cpuTime, memory, "");
+        }
+    }
+
+    private final Path path;
+    private long offset = 0;
+    private long runId = -1;  // ID of the run whose records were read, -1 if none
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE << 8).order(ByteOrder.nativeOrder());
+
+    StatusLog(Path path) { this.path = path; }
+
+    // the tester truncates the log at the start of every run, after which it's read from the beginning
+    void reset() {
+        offset = 0;
+        runId = -1;
+    }
+
+    List<Record> readNewRecords() throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset || (offset > 0 && readRunId(channel) != runId)) {
+                offset = 0;
+            }
+            // a partially written record is left for the next read
+            long end = offset + (size - offset) / RECORD_SIZE * RECORD_SIZE;
+            while (offset < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - offset));
+                int read = channel.read(buffer, offset);
+                if (read <= 0) break;
+                offset += read;
+                buffer.flip();
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    Record record = new Record(buffer);
+                    if (record.verdict == RUN_STARTED) {
+                        runId = record.memory;
+                    }
+                    records.add(record);
+                }
+                offset -= buffer.remaining();
+            }
+        } catch (NoSuchFileException exception) {
+            reset();
+        }
+        return records;
+    }
+
+    // the ID from the first record, or -1 if the log doesn't start with RUN_STARTED record
+    private long readRunId(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.nativeOrder());
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) <= 0) return -1;
+        }
+        header.flip();
+        Record record = new Record(header);
+        return record.verdict == RUN_STARTED ? record.memory : -1;
+    }
+
+    // reads a record sent by the tester over the connection, returns null when the connection is closed
+    static Record readRecord(DataInputStream stream) throws IOException {
+        byte[] data = new byte[RECORD_SIZE];
+        try {
+            stream.readFully(data);
+        } catch (EOFException exception) {
+            return null;
+        }
+        return new Record(ByteBuffer.wrap(data).order(ByteOrder.nativeOrder()));
+    }
+}
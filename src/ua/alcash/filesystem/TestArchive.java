@@ -0,0 +1,131 @@
+package ua.alcash.filesystem;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads files from zip, tar and gzipped tar archives of tests.
+ * Directory structure inside the archive is ignored, only the file names are passed to the handler.
+ */
+class TestArchive {
+    interface EntryHandler {
+        // data stream must not be closed by the handler
+        void handle(String fileName, InputStream data) throws IOException;
+    }
+
+    private static final int TAR_BLOCK_SIZE = 512;
+
+    static boolean isArchive(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    static void read(Path archive, EntryHandler handler) throws IOException {
+        String name = archive.getFileName().toString().toLowerCase();
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(archive))) {
+            if (name.endsWith(".zip")) {
+                readZip(input, handler);
+            } else if (name.endsWith(".tar")) {
+                readTar(input, handler);
+            } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+                readTar(new GZIPInputStream(input), handler);
+            } else {
+                throw new IOException("Unsupported archive format: " + archive.getFileName());
+            }
+        }
+    }
+
+    private static String getFileName(String entryName) {
+        return entryName.substring(Math.max(entryName.lastIndexOf('/'), entryName.lastIndexOf('\\')) + 1);
+    }
+
+    private static void readZip(InputStream input, EntryHandler handler) throws IOException {
+        ZipInputStream zip = new ZipInputStream(input);
+        for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+            if (!entry.isDirectory()) {
+                handler.handle(getFileName(entry.getName()), zip);
+            }
+        }
+    }
+
+    private static void readTar(InputStream input, EntryHandler handler) throws IOException {
+        DataInputStream tar = new DataInputStream(input);
+        byte[] header = new byte[TAR_BLOCK_SIZE];
+        while (true) {
+            try {
+                tar.readFully(header);
+            } catch (EOFException exception) {
+                return;
+            }
+            if (isZeroBlock(header)) return;
+            String name = readString(header, 0, 100);
+            if (readString(header, 257, 6).equals("ustar")) {
+                String prefix = readString(header, 345, 155);
+                if (!prefix.isEmpty()) name = prefix + "/" + name;
+            }
+            String sizeField = readString(header, 124, 12).trim();
+            long size = sizeField.isEmpty() ? 0 : Long.parseLong(sizeField, 8);
+            byte type = header[156];
+            BoundedInputStream data = new BoundedInputStream(tar, size);
+            if (type == '0' || type == 0) {  // regular file
+                handler.handle(getFileName(name), data);
+            }
+            data.skipRemaining();
+            long padding = (TAR_BLOCK_SIZE - size % TAR_BLOCK_SIZE) % TAR_BLOCK_SIZE;
+            new BoundedInputStream(tar, padding).skipRemaining();
+        }
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte value : block) {
+            if (value != 0) return false;
+        }
+        return true;
+    }
+
+    private static String readString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) ++end;
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static class BoundedInputStream extends InputStream {
+        private final InputStream input;
+        private long remaining;
+
+        BoundedInputStream(InputStream input, long size) {
+            this.input = input;
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) return -1;
+            int value = input.read();
+            if (value != -1) --remaining;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining == 0) return -1;
+            int read = input.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read == -1) throw new EOFException("Archive is truncated.");
+            remaining -= read;
+            return read;
+        }
+
+        void skipRemaining() throws IOException {
+            byte[] buffer = new byte[TAR_BLOCK_SIZE];
+            while (read(buffer, 0, buffer.length) != -1);
+        }
+
+        @Override
+        public void close() {}
+    }
+}
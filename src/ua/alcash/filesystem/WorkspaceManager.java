@@ -3,14 +3,31 @@ package ua.alcash.filesystem;
 import com.sun.nio.file.SensitivityWatchEventModifier;
 import ua.alcash.Configuration;
 import ua.alcash.Problem;
+import ua.alcash.Receiver;
 import ua.alcash.network.ChromeListener;
-import ua.alcash.ui.MainFrame;
+import ua.alcash.network.TesterListener;
+import ua.alcash.util.SerialExecutor;
 
-import javax.swing.*;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.ArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static java.nio.file.StandardWatchEventKinds.*;
 
@@ -18,33 +35,58 @@ import static java.nio.file.StandardWatchEventKinds.*;
  * Created by Al.Cash on 5/24/17.
  */
 public class WorkspaceManager {
-    private MainFrame parent;
+    private static final long STOP_TIMEOUT = 30;  // seconds to wait for the changes to be written on exit
+
+    private Receiver receiver;
 
     private String workspaceDirectory = System.getProperty("user.dir");
 
     private final ChromeListener chromeListener;
+    private final TesterListener testerListener;
 
     private final WatchService workspaceWatcher;
     private final Thread watcherThread;
 
-    private ArrayList<ProblemSync> problemSyncs = new ArrayList<>();
-    private ArrayList<WatchKey> watchKeys = new ArrayList<>();
-
-    public WorkspaceManager(MainFrame parent) throws InstantiationException, IOException {
-        this.parent = parent;
-        if (!Configuration.load(workspaceDirectory)) {
-            parent.receiveWarning("Current directory doesn't contain valid configuration file "
-                            + Configuration.CONFIGURATION_FILE_NAME + "\nPlease, select another directory.");
-            while (true) {
-                int result = selectWorkspace();
-                if (result == JOptionPane.CLOSED_OPTION) {
-                    throw new InstantiationException("Working directory wasn't provided.");
-                } else if (result == JOptionPane.YES_OPTION) {
-                    break;
-                }
-            }
+    // events of different problems are handled in parallel, the events of each problem are handled in order
+    private final ExecutorService eventPool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "WorkspaceEventThread");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final Map<WatchKey, WatchedProblem> watchedProblems = new ConcurrentHashMap<>();
+    // problems which are closed, but can still have changes to write
+    private final Set<CompletableFuture<Void>> closingProblems = ConcurrentHashMap.newKeySet();
+
+    // problem directories are rescanned periodically in case some events were lost without an overflow
+    private final ScheduledExecutorService rescanScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "WorkspaceRescanThread");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> rescanTask;
+
+    // the session file is written in the background, only the latest state is written
+    private final WriteBehindQueue sessionQueue = new WriteBehindQueue();
+
+    // the lists are changed only from the receiver's thread, and iterated from the other threads
+    private final List<ProblemSync> problemSyncs = new CopyOnWriteArrayList<>();
+    private final List<WatchKey> watchKeys = new CopyOnWriteArrayList<>();
+
+    private static class WatchedProblem {
+        final ProblemSync problemSync;
+        final SerialExecutor events;
+
+        WatchedProblem(ProblemSync problemSync, SerialExecutor events) {
+            this.problemSync = problemSync;
+            this.events = events;
         }
-        chromeListener = new ChromeListener(parent);
+    }
+
+    public WorkspaceManager(Receiver receiver) throws IOException {
+        this.receiver = receiver;
+        chromeListener = new ChromeListener(receiver);
+        testerListener = new TesterListener(receiver, this::receiveTestResults);
         workspaceWatcher = FileSystems.getDefault().newWatchService();
         watcherThread = new Thread(this::processEvents,"WorkspaceWatcherThread");
         watcherThread.start();
@@ -53,81 +95,243 @@ public class WorkspaceManager {
     public void configure() {
         ProblemSync.configure();
         chromeListener.start(Configuration.get("CHelper port"));
+        testerListener.start(Configuration.get("tester port"));
+        if (rescanTask != null) {
+            rescanTask.cancel(false);
+            rescanTask = null;
+        }
+        long rescanInterval = Configuration.getLong("workspace rescan interval");
+        if (rescanInterval > 0) {
+            rescanTask = rescanScheduler.scheduleWithFixedDelay(this::rescanProblems,
+                    rescanInterval, rescanInterval, TimeUnit.SECONDS);
+        }
     }
 
-    public int selectWorkspace() {
-        JFileChooser fileChooser = new JFileChooser(workspaceDirectory);
-        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
-        final AtomicInteger result = new AtomicInteger();
-        try {
-            SwingUtilities.invokeAndWait(() -> result.set(fileChooser.showOpenDialog(parent)));
-        } catch (Exception ignored) {
-        }
-        if (result.get() == JFileChooser.APPROVE_OPTION) {
-            String directory = fileChooser.getSelectedFile().getAbsolutePath();
-            if (!Configuration.load(directory)) {
-                parent.receiveWarning("Selected directory doesn't contain valid configuration file "
-                                + Configuration.CONFIGURATION_FILE_NAME);
-                return JOptionPane.NO_OPTION;
-            }
-            closeAllProblems(false);
-            workspaceDirectory = directory;
-            return JOptionPane.YES_OPTION;
+    public String getWorkspaceDirectory() { return workspaceDirectory; }
+
+    // returns false if the directory doesn't contain a valid configuration file, then the workspace isn't changed
+    public boolean setWorkspace(String directory) {
+        if (!Configuration.load(directory)) {
+            return false;
         }
-        return JOptionPane.CLOSED_OPTION;
+        closeAllProblems(false);
+        workspaceDirectory = directory;
+        return true;
     }
 
     public void updateWorkspace(boolean problemSetChanged) {
+        saveSession();
+        for (ProblemSync problemSync : problemSyncs) {
+            problemSync.saveManifest().whenComplete((result, exception) -> {
+                if (exception != null) {
+                    receiver.receiveError(exception.getCause().getMessage());
+                }
+            });
+        }
         new Thread(() -> {
             try {
                 Generator.generate(workspaceDirectory, problemSyncs, problemSetChanged);
             } catch (IOException exception) {
-                SwingUtilities.invokeLater(() -> parent.receiveError(exception.getMessage()));
+                receiver.receiveError(exception.getMessage());
             }
         }, "WorkspaceUpdateThread").start();
     }
 
-    public ProblemSync addProblem(Problem newProblem) throws IOException {
-        ProblemSync newProblemSync = new ProblemSync(workspaceDirectory, newProblem);
-        String directory = newProblemSync.getDirectory();
+    // the state is serialized right away, because the problems are changed on the receiver's thread
+    public void saveSession() {
+        Path file = Paths.get(workspaceDirectory, Configuration.get("workspace session file"));
+        byte[] data = WorkspaceSession.serialize(Paths.get(workspaceDirectory), problemSyncs);
+        sessionQueue.submit(file.toString(), () -> WorkspaceSession.write(file, data)).whenComplete(
+                (result, exception) -> {
+                    if (exception != null) {
+                        receiver.receiveError("Saving the session failed:\n" + exception.getCause().getMessage());
+                    }
+                });
+    }
+
+    // opens the problems which were open when the workspace was closed, their tests are read only when displayed
+    public List<ProblemSync> restoreSession() throws IOException {
+        List<ProblemSync> restored = new ArrayList<>();
+        for (ProblemSync problemSync : WorkspaceSession.read(Paths.get(workspaceDirectory),
+                Paths.get(workspaceDirectory, Configuration.get("workspace session file")))) {
+            try {
+                checkNewDirectory(problemSync.getDirectory());
+                problemSync.restore();
+                watchProblem(problemSync);
+                restored.add(problemSync);
+            } catch (IOException exception) {
+                problemSync.close();
+                receiver.receiveError("Restoring problem " + problemSync.getDirectory() + " caused an error:\n"
+                        + exception.getMessage());
+            }
+        }
+        return restored;
+    }
+
+    private void checkNewDirectory(String directory) throws IOException {
         for (ProblemSync problemSync : problemSyncs) {
             if (problemSync.getDirectory().equals(directory)) {
                 throw new IOException("Problem with such directory already exists: " + problemSync.getDirectory());
             }
         }
+    }
+
+    public ProblemSync addProblem(Problem newProblem) throws IOException {
+        ProblemSync newProblemSync = new ProblemSync(workspaceDirectory, newProblem);
+        checkNewDirectory(newProblemSync.getDirectory());
         newProblemSync.initialize();
-        synchronized (workspaceWatcher) {
-            problemSyncs.add(newProblemSync);
+        watchProblem(newProblemSync);
+        return newProblemSync;
+    }
+
+    // opens a problem directory which is already on the disk, like a problem from an archive
+    public ProblemSync openProblem(Path directory) throws IOException {
+        ProblemSync newProblemSync = ProblemSync.open(directory.toAbsolutePath().normalize());
+        checkNewDirectory(newProblemSync.getDirectory());
+        try {
+            newProblemSync.restore();
+        } catch (IOException exception) {
+            newProblemSync.close();
+            throw exception;
+        }
+        watchProblem(newProblemSync);
+        newProblemSync.loadPreviewsInBackground();
+        return newProblemSync;
+    }
+
+    private void watchProblem(ProblemSync newProblemSync) throws IOException {
+        String directory = newProblemSync.getDirectory();
+        WatchedProblem watched = new WatchedProblem(newProblemSync, new SerialExecutor(eventPool));
+        // the changes found by the watcher and the tester are applied to the tests on the receiver's thread
+        newProblemSync.setTestsThread(receiver::runAndWait);
+        // the key can be signalled before it's put into the map, so the watcher thread looks it up again under this lock
+        synchronized (watchedProblems) {
             WatchKey key = Paths.get(directory).register(workspaceWatcher,
-                    new WatchEvent.Kind[]{ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY},
+                    new WatchEvent.Kind<?>[]{ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY},
                     SensitivityWatchEventModifier.HIGH);
+            watchedProblems.put(key, watched);
             watchKeys.add(key);
         }
-        return newProblemSync;
+        problemSyncs.add(newProblemSync);
     }
 
-    public void closeProblem(int index, boolean delete) {
+    public List<ProblemSync> getProblems() { return Collections.unmodifiableList(problemSyncs); }
+
+    // returns the index of the open problem with the same directory, platform, contest and ID, or -1;
+    // a different problem with the same directory isn't found, so adding it fails with the directory error
+    public int findProblem(Problem problem) {
+        String directory = ProblemSync.getDirectory(workspaceDirectory, problem);
+        for (int index = 0; index < problemSyncs.size(); ++index) {
+            ProblemSync problemSync = problemSyncs.get(index);
+            if (problemSync.getDirectory().equals(directory) && isSameProblem(problemSync.getProblem(), problem)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSameProblem(Problem first, Problem second) {
+        for (String key : new String[]{"platform_id", "contest_name", "problem_id"}) {
+            if (!Objects.equals(first.getValue(key, true), second.getValue(key, true))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void mergeProblem(int index, Problem update) throws IOException {
+        ProblemSync problemSync = problemSyncs.get(index);
+        problemSync.mergeProblem(update).whenComplete((editedSamples, exception) -> {
+            if (exception != null) {
+                receiver.receiveError(exception.getCause().getMessage());
+            } else if (!editedSamples.isEmpty()) {
+                receiver.receiveWarning("Samples " + String.join(", ", editedSamples) + " of problem "
+                        + problemSync.getProblem().getFullName() + " were edited, so they weren't replaced.\n"
+                        + "Delete them to receive them again.");
+            }
+        });
+    }
+
+    // the tests are imported on the event thread of the problem, the changes of the copied files are handled after it
+    public CompletableFuture<Void> importTests(int index, Path source) {
+        ProblemSync problemSync = problemSyncs.get(index);
+        return CompletableFuture.runAsync(() -> {
+            try {
+                problemSync.importTests(source);
+            } catch (IOException exception) {
+                throw new CompletionException(exception);
+            }
+        }, watchedProblems.get(watchKeys.get(index)).events);
+    }
+
+    // the future is completed when the queued changes of the problem are written
+    public CompletableFuture<Void> closeProblem(int index, boolean delete) {
         if (delete) {
             try {
                 problemSyncs.get(index).deleteFromDisk();
             } catch (IOException exception) {
-                parent.receiveError("Deleting folder " + problemSyncs.get(index).getDirectory() + " caused an error:\n"
-                        + exception.getMessage());
+                receiver.receiveError("Deleting folder " + problemSyncs.get(index).getDirectory()
+                        + " caused an error:\n" + exception.getMessage());
             }
         }
-        synchronized (workspaceWatcher) {
-            problemSyncs.remove(index);
-            watchKeys.get(index).cancel();
-            watchKeys.remove(index);
-        }
+        ProblemSync problemSync = problemSyncs.remove(index);
+        WatchKey key = watchKeys.remove(index);
+        key.cancel();
+        WatchedProblem watched = watchedProblems.remove(key);
+        // the events which are already queued for the problem are handled before it's closed
+        CompletableFuture<Void> closed = CompletableFuture.supplyAsync(problemSync::close, watched.events)
+                .thenCompose(writesDone -> writesDone);
+        closingProblems.add(closed);
+        closed.whenComplete((result, exception) -> closingProblems.remove(closed));
+        return closed;
     }
 
-    public void closeAllProblems(boolean delete) {
+    public CompletableFuture<Void> closeAllProblems(boolean delete) {
+        List<CompletableFuture<Void>> closed = new ArrayList<>();
         while (!problemSyncs.isEmpty()) {
-            closeProblem(0, delete);
+            closed.add(closeProblem(0, delete));
+        }
+        return CompletableFuture.allOf(closed.toArray(new CompletableFuture<?>[0]));
+    }
+
+    // status records are received while the tester runs, and applied in order with the file changes of the problem
+    private void receiveTestResults(String testsListPath, DataInputStream records) throws IOException {
+        Path path = Paths.get(testsListPath);
+        WatchedProblem watched = null;
+        for (WatchedProblem candidate : watchedProblems.values()) {
+            if (candidate.problemSync.isTestsListFile(path)) {
+                watched = candidate;
+                break;
+            }
+        }
+        if (watched == null) return;
+        ProblemSync problemSync = watched.problemSync;
+        watched.events.execute(problemSync::testerConnected);
+        try {
+            StatusLog.Record record;
+            while ((record = StatusLog.readRecord(records)) != null) {
+                StatusLog.Record received = record;
+                execute(watched, () -> problemSync.statusRecordReceived(received));
+            }
+        } finally {
+            execute(watched, problemSync::testerDisconnected);
         }
     }
 
+    private interface ProblemAction {
+        void run() throws IOException;
+    }
+
+    private void execute(WatchedProblem watched, ProblemAction action) {
+        watched.events.execute(() -> {
+            try {
+                action.run();
+            } catch (IOException exception) {
+                receiver.receiveError(exception.getMessage());
+            }
+        });
+    }
+
     @SuppressWarnings("unchecked")
     private static <T> WatchEvent<T> cast(WatchEvent<?> event) { return (WatchEvent<T>)event; }
 
@@ -140,32 +344,81 @@ public class WorkspaceManager {
                 break;
             }
 
-            synchronized (workspaceWatcher) {
-                int index = 0;
-                for (; index < watchKeys.size() && key != watchKeys.get(index); ++index);
-                if (index == watchKeys.size()) continue;
-
-                for (WatchEvent<?> event: key.pollEvents()) {
-                    WatchEvent.Kind kind = event.kind();
-                    if (kind == OVERFLOW) continue;
-                    WatchEvent<Path> watchEvent = cast(event);
-                    Path file = watchEvent.context();
-                    try {
-                        if (!problemSyncs.get(index).fileChanged(kind, file.toString())) {
-                            throw new IOException("Unexpected changes were observed in file " + file.toString());
-                        }
-                    } catch (IOException exception) {
-                        SwingUtilities.invokeLater(() -> parent.receiveError(exception.getMessage()));
-                    }
+            WatchedProblem watched = watchedProblems.get(key);
+            if (watched == null) {
+                synchronized (watchedProblems) {
+                    watched = watchedProblems.get(key);
                 }
+                if (watched == null) continue;
             }
+            // the key is reset right away, the events which come meanwhile are queued after these ones
+            List<WatchEvent<?>> events = key.pollEvents();
             key.reset();
+            ProblemSync problemSync = watched.problemSync;
+            watched.events.execute(() -> handleEvents(key, problemSync, events));
+        }
+    }
+
+    private void handleEvents(WatchKey key, ProblemSync problemSync, List<WatchEvent<?>> events) {
+        boolean overflow = false;
+        for (WatchEvent<?> event : events) {
+            // the problem was closed after the events were queued
+            if (!key.isValid()) return;
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == OVERFLOW) {  // some events were lost, the directory is rescanned after the rest are handled
+                overflow = true;
+                continue;
+            }
+            WatchEvent<Path> watchEvent = cast(event);
+            Path file = watchEvent.context();
+            try {
+                if (!problemSync.fileChanged(kind, file.toString())) {
+                    throw new IOException("Unexpected changes were observed in file " + file.toString());
+                }
+            } catch (IOException exception) {
+                receiver.receiveError(exception.getMessage());
+            }
+        }
+        if (overflow && key.isValid()) {
+            try {
+                problemSync.reconcile();
+            } catch (IOException exception) {
+                receiver.receiveError(exception.getMessage());
+            }
         }
     }
 
+    // the rescan is queued after the events of each problem, so it doesn't interleave with them
+    private void rescanProblems() {
+        for (Map.Entry<WatchKey, WatchedProblem> entry : watchedProblems.entrySet()) {
+            WatchKey key = entry.getKey();
+            ProblemSync problemSync = entry.getValue().problemSync;
+            execute(entry.getValue(), () -> {
+                if (key.isValid()) {
+                    problemSync.reconcile();
+                }
+            });
+        }
+    }
+
+    // waits until the changes of all the problems are written, so that nothing is lost on exit;
+    // isn't called on the receiver's thread, because the queued events of the problems can wait for it
     public void stop() {
         chromeListener.stop();
+        testerListener.stop();
         watcherThread.interrupt();
+        rescanScheduler.shutdownNow();
+        closeAllProblems(false);
+        try {
+            CompletableFuture.allOf(closingProblems.toArray(new CompletableFuture<?>[0]))
+                    .get(STOP_TIMEOUT, TimeUnit.SECONDS);
+            sessionQueue.shutdown().get(STOP_TIMEOUT, TimeUnit.SECONDS);
+            eventPool.shutdown();
+            eventPool.awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ignored) {  // the failed writes are already reported
+        }
         try {
             workspaceWatcher.close();
         } catch (IOException ignored) {
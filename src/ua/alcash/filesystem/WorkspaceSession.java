@@ -0,0 +1,92 @@
+package ua.alcash.filesystem;
+
+import net.egork.chelper.task.TestType;
+import ua.alcash.Problem;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Problems open in a workspace, saved in a small binary file, so that they are open again after a restart.
+ * Only the problem settings and the directory are saved, the tests are restored from the problem directory.
+ */
+class WorkspaceSession {
+    private static final int FORMAT_VERSION = 1;
+
+    static byte[] serialize(Path workspacePath, List<ProblemSync> problemSyncs) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(problemSyncs.size());
+            for (ProblemSync problemSync : problemSyncs) {
+                Problem problem = problemSync.getProblem();
+                writeString(output, problem.getValue("problem_id", true));
+                writeString(output, problem.getValue("problem_name", true));
+                writeString(output, problem.getValue("platform_id", true));
+                writeString(output, problem.getValue("contest_name", true));
+                output.writeDouble(problem.getTimeLimit());
+                output.writeDouble(problem.getMemoryLimit());
+                output.writeUTF(problem.getInputFile());
+                output.writeUTF(problem.getOutputFile());
+                output.writeUTF(problem.getTestType().name());
+                output.writeBoolean(problem.getInteractive());
+                output.writeBoolean(problem.getCustomChecker());
+                output.writeUTF(problem.getCheckerParams());
+                // the workspace can be moved together with the problems
+                output.writeUTF(workspacePath.relativize(Paths.get(problemSync.getDirectory())).toString());
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);  // writing to memory doesn't fail
+        }
+        return bytes.toByteArray();
+    }
+
+    // names of problems created by hand can be missing
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        output.writeUTF(value != null ? value : "");
+    }
+
+    // the file is replaced at once, so that it's never left half written
+    static void write(Path file, byte[] data) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temporary, data);
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // returns the problems which aren't restored yet, problems with deleted directories are skipped
+    static List<ProblemSync> read(Path workspacePath, Path file) throws IOException {
+        List<ProblemSync> result = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return result;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported format of the session file " + file);
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; ++i) {
+                Problem problem = new Problem(input.readUTF(), input.readUTF(), input.readUTF(), input.readUTF());
+                problem.setTimeLimit(input.readDouble());
+                problem.setMemoryLimit(input.readDouble());
+                problem.setInputFile(input.readUTF());
+                problem.setOutputFile(input.readUTF());
+                try {
+                    problem.setTestType(TestType.valueOf(input.readUTF()));
+                } catch (IllegalArgumentException ignored) {
+                }
+                problem.setInteractive(input.readBoolean());
+                problem.setCustomChecker(input.readBoolean());
+                problem.setCheckerParams(input.readUTF());
+                Path directory = workspacePath.resolve(input.readUTF());
+                if (Files.isDirectory(directory)) {
+                    result.add(new ProblemSync(problem, directory.toString()));
+                }
+            }
+        } catch (EOFException exception) {
+            throw new IOException("Session file " + file + " is truncated.");
+        }
+        return result;
+    }
+}
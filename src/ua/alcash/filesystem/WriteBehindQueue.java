@@ -0,0 +1,69 @@
+package ua.alcash.filesystem;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Applies file changes of a problem directory on a background thread, so that the UI never waits for the disk.
+ * Changes are applied one by one in the order of submission. A change of a file that is still waiting
+ * replaces the waiting one, so only the latest content of a file is written.
+ */
+class WriteBehindQueue {
+    interface FileAction { void apply() throws IOException; }
+
+    private static class PendingAction {
+        FileAction action;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingAction(FileAction action) { this.action = action; }
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "WriteBehindThread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, PendingAction> pending = new HashMap<>();
+
+    // the future is completed when the latest submitted change of the file is applied
+    CompletableFuture<Void> submit(String fileName, FileAction action) {
+        synchronized (pending) {
+            PendingAction queued = pending.get(fileName);
+            if (queued != null) {
+                queued.action = action;
+                return queued.future;
+            }
+            PendingAction pendingAction = new PendingAction(action);
+            pending.put(fileName, pendingAction);
+            executor.execute(() -> apply(fileName, pendingAction));
+            return pendingAction.future;
+        }
+    }
+
+    private void apply(String fileName, PendingAction pendingAction) {
+        FileAction action;
+        synchronized (pending) {
+            pending.remove(fileName);
+            action = pendingAction.action;
+        }
+        try {
+            action.apply();
+            pendingAction.future.complete(null);
+        } catch (Throwable exception) {
+            // wrapped the same way as the failures of dependent futures
+            pendingAction.future.completeExceptionally(new CompletionException(exception));
+        }
+    }
+
+    // the future is completed when all the changes submitted before are applied
+    CompletableFuture<Void> drain() { return CompletableFuture.runAsync(() -> {}, executor); }
+
+    // the future is completed when all the changes submitted before are applied and the thread is stopped
+    CompletableFuture<Void> shutdown() { return drain().whenComplete((result, exception) -> executor.shutdown()); }
+}
@@ -1,26 +1,53 @@
 package ua.alcash.network;
 
-import ua.alcash.Problem;
+import ua.alcash.Configuration;
+import ua.alcash.Receiver;
+import ua.alcash.parsing.JsonTaskParser;
 import ua.alcash.parsing.ParseManager;
-import ua.alcash.ui.MainFrame;
+import ua.alcash.util.Hash;
 
-import javax.swing.*;
 import javax.xml.parsers.ParserConfigurationException;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Al.Cash on 5/11/17.
  */
 public class ChromeListener implements Runnable {
-    private MainFrame receiver;
+    // tasks in JSON format are posted to this path, everything else is treated as CHelper HTML message
+    private static final String JSON_PATH = "/json";
+
+    private static final int MAX_RECENT_MESSAGES = 64;
+
+    private Receiver receiver;
     private ServerSocket serverSocket;
 
-    public ChromeListener(MainFrame receiver) { this.receiver = receiver; }
+    // accepted connections are read and parsed here, so that the accepting thread never waits for a parser;
+    // when the queue is full, the accepting thread handles the connection itself, which throttles new pushes
+    private ThreadPoolExecutor handlers;
+
+    private ProblemBatcher batcher;
+
+    private int maxRequestSize;
+
+    // hashes of recently received message bodies -> time of receiving, used to drop repeated pushes
+    private final Map<String, Long> recentMessages = new LinkedHashMap<String, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) { return size() > MAX_RECENT_MESSAGES; }
+    };
+    private long duplicateWindow;
+
+    public ChromeListener(Receiver receiver) { this.receiver = receiver; }
 
     public void start(String portString) {
         stop();
@@ -28,45 +55,139 @@ public class ChromeListener implements Runnable {
             return;
         }
         try {
-            int port = Integer.parseInt(portString);
+            int port = Integer.parseInt(portString.trim());
             serverSocket = new ServerSocket(port);
+            duplicateWindow = Configuration.getLong("CHelper duplicate window");
+            maxRequestSize = Configuration.getInt("CHelper maximum request size") << 20;
+            handlers = createHandlers(Configuration.getInt("CHelper threads"),
+                    Configuration.getInt("CHelper queue size"));
+            batcher = new ProblemBatcher(receiver,
+                    Configuration.getLong("CHelper batch window"),
+                    Configuration.getInt("CHelper batch size"));
             new Thread(this, "ChromeListenerThread").start();
+        } catch (NumberFormatException exception) {
+            receiver.receiveError("Invalid CHelper port " + portString + ".");
         } catch (IOException exception) {
             receiver.receiveError("Could not create serverSocket for Chrome parser, " +
                             "probably another CHelper-eligible project is running.");
         }
     }
 
+    private static ThreadPoolExecutor createHandlers(int threads, int queueSize) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ChromeHandlerThread" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
     public void stop() {
         try {
             serverSocket.close();
         } catch (Throwable ignored) {
         }
+        if (handlers != null) {
+            handlers.shutdownNow();
+            handlers = null;
+        }
+        if (batcher != null) {
+            batcher.stop();
+            batcher = null;
+        }
     }
 
     @Override
     public void run() {
+        ServerSocket serverSocket = this.serverSocket;
+        ThreadPoolExecutor handlers = this.handlers;
+        ProblemBatcher batcher = this.batcher;
         while (true) try {
             if (serverSocket.isClosed())
                 return;
-            try (Socket socket = serverSocket.accept()) {
-                BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(socket.getInputStream(), "UTF-8"));
-                while (!reader.readLine().isEmpty());
-                final String platformId = reader.readLine();
-                StringBuilder builder = new StringBuilder();
-                String s;
-                while ((s = reader.readLine()) != null)
-                    builder.append(s).append('\n');
-                final String page = builder.toString();
-                try {
-                    final Collection<Problem> problems = ParseManager.parseProblemsFromHtml(platformId, page);
-                    SwingUtilities.invokeLater(() -> receiver.receiveProblems(problems));
-                } catch (ParserConfigurationException exception) {
-                    SwingUtilities.invokeLater(() -> receiver.receiveError(getErrorMessage(platformId)));
+            Socket socket = serverSocket.accept();
+            try {
+                handlers.execute(() -> handle(socket, batcher));
+            } catch (RejectedExecutionException exception) {
+                socket.close();  // the listener is stopped
+            }
+        } catch (Throwable ignored) {
+        }
+    }
+
+    private void handle(Socket socket, ProblemBatcher batcher) {
+        // closing the stream closes the socket
+        try (InputStream input = socket.getInputStream()) {
+            Request request = Request.read(input, maxRequestSize);
+            String messageHash = Hash.of(request.getBuffer(), request.getBodyOffset(), request.getBodyLength());
+            if (!markReceived(messageHash)) {
+                return;
+            }
+            boolean queued = false;
+            try {
+                queued = parseAndQueue(request, batcher);
+            } finally {
+                if (!queued) {
+                    forgetMessage(messageHash);  // so that a failed push can be retried
                 }
             }
+        } catch (Request.TooLargeException exception) {
+            receiver.receiveError("Message from CHelper Chrome extension was rejected.\n" + exception.getMessage());
         } catch (Throwable ignored) {
+        } finally {
+            Request.releaseBuffer();
+        }
+    }
+
+    // returns false if the message isn't parsed
+    private boolean parseAndQueue(Request request, ProblemBatcher batcher) {
+        if (request.getPath().startsWith(JSON_PATH) || request.getContentType().contains("json")) {
+            try {
+                batcher.add(Collections.singletonList(JsonTaskParser.parse(
+                        request.getBuffer(), request.getBodyOffset(), request.getBodyLength())));
+                return true;
+            } catch (ParserConfigurationException exception) {
+                receiver.receiveError("Failed to parse JSON task.\n" + exception.getMessage());
+                return false;
+            }
+        }
+        // the first line of the body is the platform ID, the rest is the page
+        int bodyStart = request.getBodyOffset();
+        int bodyEnd = bodyStart + request.getBodyLength();
+        int pageStart = request.nextLine(bodyStart);
+        if (pageStart == -1) pageStart = bodyEnd;
+        final String platformId = request.decode(bodyStart, pageStart);
+        final String page = request.decode(pageStart, bodyEnd);
+        try {
+            batcher.add(ParseManager.parseProblemsFromHtml(platformId, page));
+            return true;
+        } catch (ParserConfigurationException exception) {
+            receiver.receiveError(getErrorMessage(platformId));
+            return false;
+        }
+    }
+
+    // checks and marks the message at once, so that of the same messages received together only one is parsed;
+    // returns false if the message was already received within the duplicate window
+    private boolean markReceived(String messageHash) {
+        long time = System.currentTimeMillis();
+        synchronized (recentMessages) {
+            Long previousTime = recentMessages.get(messageHash);
+            if (previousTime != null && time - previousTime < duplicateWindow) {
+                return false;
+            }
+            recentMessages.remove(messageHash);  // moved to the end of the eviction order
+            recentMessages.put(messageHash, time);
+            return true;
+        }
+    }
+
+    private void forgetMessage(String messageHash) {
+        synchronized (recentMessages) {
+            recentMessages.remove(messageHash);
         }
     }
 
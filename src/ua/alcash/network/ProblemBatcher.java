@@ -0,0 +1,63 @@
+package ua.alcash.network;
+
+import ua.alcash.Problem;
+import ua.alcash.Receiver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects problems received within a short time window and passes them to the receiver together,
+ * so that opening all the problems of a contest causes a single workspace regeneration.
+ */
+class ProblemBatcher {
+    private final Receiver receiver;
+    private final long window;
+    private final int maxBatchSize;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ProblemBatcherThread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ArrayList<Problem> batch = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    ProblemBatcher(Receiver receiver, long window, int maxBatchSize) {
+        this.receiver = receiver;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    synchronized void add(Collection<Problem> problems) {
+        batch.addAll(problems);
+        if (batch.size() >= maxBatchSize) {
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = scheduler.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        final Collection<Problem> problems = batch;
+        batch = new ArrayList<>();
+        receiver.receiveProblems(problems);
+    }
+
+    void stop() {
+        flush();
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,144 @@
+package ua.alcash.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HTTP request received by ChromeListener.
+ * The body is read into a per-thread buffer that is reused between requests,
+ * so it stays valid only until releaseBuffer is called after the request is handled.
+ */
+class Request {
+    static class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        TooLargeException(long size) { super("Request of " + size + " bytes exceeds the size limit."); }
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+    // buffers grown up to this size are kept, it's enough for the pages of large contests
+    private static final int MAX_KEPT_BUFFER_SIZE = 4 << 20;
+
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_SIZE]);
+
+    private String path = "";
+    private String contentType = "";
+    private long contentLength = -1;
+
+    private byte[] buffer;
+    private int bodyOffset;
+    private int bodyLength;
+
+    private Request() {}
+
+    String getPath() { return path; }
+
+    String getContentType() { return contentType; }
+
+    byte[] getBuffer() { return buffer; }
+
+    int getBodyOffset() { return bodyOffset; }
+
+    int getBodyLength() { return bodyLength; }
+
+    // returns the index of the first byte after the line starting at from, or -1 if the line isn't finished
+    int nextLine(int from) {
+        int end = bodyOffset + bodyLength;
+        for (int i = from; i < end; ++i) {
+            if (buffer[i] == '\n') return i + 1;
+        }
+        return -1;
+    }
+
+    String decode(int from, int to) {
+        while (to > from && (buffer[to - 1] == '\n' || buffer[to - 1] == '\r')) --to;
+        return new String(buffer, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    static Request read(InputStream input, int maxSize) throws IOException {
+        Request request = new Request();
+        byte[] buffer = BUFFERS.get();
+        int size = 0;
+        int headersEnd = -1;
+        while (headersEnd == -1) {
+            if (size == buffer.length) {
+                if (size >= maxSize) throw new TooLargeException(size);
+                buffer = grow(buffer, size, (int) Math.min(2L * buffer.length, maxSize));
+            }
+            int read = input.read(buffer, size, buffer.length - size);
+            if (read == -1) throw new IOException("Request headers are incomplete.");
+            int from = Math.max(0, size - 3);
+            size += read;
+            headersEnd = findHeadersEnd(buffer, from, size);
+        }
+        request.parseHeaders(new String(buffer, 0, headersEnd, StandardCharsets.ISO_8859_1));
+        // the size is checked before reading the body, so that oversized requests are rejected early
+        if (request.contentLength > maxSize) throw new TooLargeException(request.contentLength);
+
+        int limit = headersEnd + (int) (request.contentLength >= 0 ? request.contentLength : maxSize);
+        if (request.contentLength >= 0 && buffer.length < limit) {
+            buffer = grow(buffer, size, limit);
+        }
+        while (size < limit) {
+            if (size == buffer.length) {
+                buffer = grow(buffer, size, (int) Math.min(2L * buffer.length, limit));
+            }
+            int read = input.read(buffer, size, buffer.length - size);
+            if (read == -1) break;
+            size += read;
+        }
+        if (request.contentLength < 0 && size == limit && input.read() != -1) {
+            throw new TooLargeException(size - headersEnd);
+        }
+        request.buffer = buffer;
+        request.bodyOffset = headersEnd;
+        request.bodyLength = Math.min(size, limit) - headersEnd;
+        return request;
+    }
+
+    // a buffer grown for an unusually large request isn't kept after the request is handled,
+    // so that the handler threads don't hold the memory of the largest request they have seen
+    static void releaseBuffer() {
+        if (BUFFERS.get().length > MAX_KEPT_BUFFER_SIZE) {
+            BUFFERS.set(new byte[INITIAL_BUFFER_SIZE]);
+        }
+    }
+
+    private static byte[] grow(byte[] buffer, int size, int capacity) {
+        byte[] grown = new byte[capacity];
+        System.arraycopy(buffer, 0, grown, 0, size);
+        BUFFERS.set(grown);
+        return grown;
+    }
+
+    // headers end with an empty line, which may be terminated either by CRLF or LF
+    private static int findHeadersEnd(byte[] buffer, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            if (buffer[i] != '\n') continue;
+            if (i + 1 < to && buffer[i + 1] == '\n') return i + 2;
+            if (i + 2 < to && buffer[i + 1] == '\r' && buffer[i + 2] == '\n') return i + 3;
+        }
+        return -1;
+    }
+
+    private void parseHeaders(String headers) {
+        String[] lines = headers.split("\r?\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length > 1) path = requestLine[1];
+        for (int i = 1; i < lines.length; ++i) {
+            int colon = lines[i].indexOf(':');
+            if (colon == -1) continue;
+            String name = lines[i].substring(0, colon).trim();
+            String value = lines[i].substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                try {
+                    contentLength = Long.parseLong(value);
+                } catch (NumberFormatException ignored) {
+                }
+            } else if (name.equalsIgnoreCase("Content-Type")) {
+                contentType = value;
+            }
+        }
+    }
+}
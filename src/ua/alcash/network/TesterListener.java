@@ -0,0 +1,104 @@
+package ua.alcash.network;
+
+import ua.alcash.Receiver;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Receives test results from the running tester over a loopback connection,
+ * so that they are shown as soon as a test finishes, without waiting for file system events.
+ * The connection starts with the tests list file path followed by a line break,
+ * which identifies the problem, and then the status records follow until the end of the run.
+ */
+public class TesterListener implements Runnable {
+    private static final int MAX_PATH_LENGTH = 4096;
+
+    public interface ConnectionHandler {
+        void handle(String testsListPath, DataInputStream records) throws IOException;
+    }
+
+    private Receiver receiver;
+    private ConnectionHandler handler;
+    private ServerSocket serverSocket;
+
+    public TesterListener(Receiver receiver, ConnectionHandler handler) {
+        this.receiver = receiver;
+        this.handler = handler;
+    }
+
+    public void start(String portString) {
+        stop();
+        if (portString == null) {
+            return;
+        }
+        int port;
+        try {
+            port = Integer.parseInt(portString.trim());
+        } catch (NumberFormatException exception) {
+            receiver.receiveError("Invalid tester port " + portString + ", test results will be read from files.");
+            return;
+        }
+        if (port <= 0) {
+            return;
+        }
+        try {
+            // the tester runs on the same machine, so the connections from other machines aren't accepted
+            serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+            new Thread(this, "TesterListenerThread").start();
+        } catch (IOException exception) {
+            receiver.receiveWarning("Could not create serverSocket for tester, test results will be read from files.");
+        }
+    }
+
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (Throwable ignored) {
+        }
+    }
+
+    @Override
+    public void run() {
+        ServerSocket serverSocket = this.serverSocket;
+        while (true) try {
+            if (serverSocket.isClosed())
+                return;
+            Socket socket = serverSocket.accept();
+            // a connection lasts for the whole run, so each one gets its own thread
+            Thread thread = new Thread(() -> handle(socket), "TesterConnectionThread");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (Throwable ignored) {
+        }
+    }
+
+    private void handle(Socket socket) {
+        // closing the stream closes the socket
+        try (DataInputStream stream = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            String testsListPath = readLine(stream);
+            if (testsListPath != null) {
+                handler.handle(testsListPath, stream);
+            }
+        } catch (IOException exception) {
+            receiver.receiveError(exception.getMessage());
+        }
+    }
+
+    private static String readLine(DataInputStream stream) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int c = stream.read(); c != '\n'; c = stream.read()) {
+            if (c == -1 || line.size() == MAX_PATH_LENGTH) {
+                return null;
+            }
+            line.write(c);
+        }
+        return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,46 @@
+package ua.alcash.parsing;
+
+import net.egork.chelper.parser.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Platforms supported by CHelper parsers.
+ * Parsers are created by lambdas rather than constructor references,
+ * so that parser classes aren't even loaded until the platform is used.
+ */
+public class ChelperPlatforms implements PlatformProvider {
+    @Override
+    public List<Platform> getPlatforms() {
+        return Arrays.asList(
+                new Platform("atcoder", new String[]{"atcoder.jp"}, null,
+                        () -> new AtCoderParser()),
+                new Platform("codechef", new String[]{"codechef.com"}, "www.codechef.com/",
+                        () -> new CodeChefParser()),
+                new Platform("codeforces", new String[]{"codeforces.com"}, "codeforces.com/contest/",
+                        () -> new CodeforcesParser()),
+                new Platform("csacademy", new String[]{"csacademy.com"}, null,
+                        () -> new CSAcademyParser()),
+                new Platform("facebook", new String[]{"facebook.com/hackercup"}, null,
+                        () -> new FacebookParser()),
+                new Platform("gcj", new String[]{"code.google.com/codejam"}, "code.google.com/codejam/contest/",
+                        () -> new GCJParser()),
+                new Platform("hackerearth", new String[]{"hackerearth.com"}, null,
+                        () -> new HackerEarthParser()),
+                new Platform("hackerrank", new String[]{"hackerrank.com"}, null,
+                        () -> new HackerRankParser()),
+                new Platform("kattis", new String[]{"open.kattis.com"}, "open.kattis.com/contests/",
+                        () -> new KattisParser()),
+                new Platform("new-gcj", new String[]{"codejam.withgoogle.com"}, "codejam.withgoogle.com/",
+                        () -> new NewGCJParser()),
+                new Platform("rcc", new String[]{"russiancodecup.ru"}, "/championship/round/",
+                        () -> new RCCParser()),
+                new Platform("timus", new String[]{"acm.timus.ru"}, "acm.timus.ru/problemset.aspx?space=",
+                        () -> new TimusParser()),
+                new Platform("usaco", new String[]{"usaco.org"}, null,
+                        () -> new UsacoParser()),
+                new Platform("yandex", new String[]{"contest.yandex"}, null,
+                        () -> new YandexParser()));
+    }
+}
@@ -0,0 +1,195 @@
+package ua.alcash.parsing;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import net.egork.chelper.task.TestType;
+import ua.alcash.Problem;
+import ua.alcash.util.Hash;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses a task in JSON format (name, group, url, timeLimit in ms, memoryLimit in MB,
+ * tests, testType, input and output configurations) directly into a Problem.
+ */
+public class JsonTaskParser {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    // problem names usually start with the problem ID, like "A. Name" or "A - Name"
+    private static final Pattern NAME_PATTERN = Pattern.compile("([A-Za-z0-9]+)(?:\\.| -)\\s+(.*)");
+
+    private static final String UNKNOWN_PLATFORM = "other";
+
+    private String name = "";
+    private String group = "";
+    private String url = "";
+    private double timeLimit = -1;
+    private double memoryLimit = -1;
+    private TestType testType = TestType.SINGLE;
+    private String inputFile = "";
+    private String outputFile = "";
+    private boolean interactive = false;
+    private ArrayList<String[]> tests = new ArrayList<>();
+
+    private JsonTaskParser() {}
+
+    public static Problem parse(byte[] data, int offset, int length) throws ParserConfigurationException {
+        JsonTaskParser task = new JsonTaskParser();
+        try (JsonParser parser = FACTORY.createParser(data, offset, length)) {
+            task.parseTask(parser);
+        } catch (IOException exception) {
+            throw new ParserConfigurationException("Invalid JSON task: " + exception.getMessage());
+        }
+        return task.toProblem();
+    }
+
+    private void parseTask(JsonParser parser) throws IOException {
+        expect(parser.nextToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "name":
+                    name = parser.getValueAsString("");
+                    break;
+                case "group":
+                    group = parser.getValueAsString("");
+                    break;
+                case "url":
+                    url = parser.getValueAsString("");
+                    break;
+                case "timeLimit":
+                    timeLimit = parser.getValueAsDouble(-1) / 1000;
+                    break;
+                case "memoryLimit":
+                    memoryLimit = parser.getValueAsDouble(-1);
+                    break;
+                case "interactive":
+                    interactive = parser.getValueAsBoolean();
+                    break;
+                case "testType":
+                    testType = parseTestType(parser.getValueAsString(""));
+                    break;
+                case "input":
+                    inputFile = parseStream(parser, token);
+                    break;
+                case "output":
+                    outputFile = parseStream(parser, token);
+                    break;
+                case "tests":
+                    parseTests(parser, token);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+    }
+
+    private static TestType parseTestType(String value) {
+        switch (value) {
+            case "multiNumber":
+                return TestType.MULTI_NUMBER;
+            case "multiEof":
+                return TestType.MULTI_EOF;
+            default:
+                return TestType.SINGLE;
+        }
+    }
+
+    // returns the file name for file streams, and empty string for standard streams
+    private static String parseStream(JsonParser parser, JsonToken token) throws IOException {
+        expect(token, JsonToken.START_OBJECT);
+        String type = "";
+        String fileName = "";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (field.equals("type")) {
+                type = parser.getValueAsString("");
+            } else if (field.equals("fileName")) {
+                fileName = parser.getValueAsString("");
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return type.equals("file") ? fileName : "";
+    }
+
+    private void parseTests(JsonParser parser, JsonToken token) throws IOException {
+        expect(token, JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String[] test = new String[] {"", ""};
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (field.equals("input")) {
+                    test[0] = parser.getValueAsString("");
+                } else if (field.equals("output")) {
+                    test[1] = parser.getValueAsString("");
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            tests.add(test);
+        }
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("expected " + expected + ", but found " + actual);
+        }
+    }
+
+    private Problem toProblem() throws ParserConfigurationException {
+        if (name.isEmpty()) {
+            throw new ParserConfigurationException("Task name is missing.");
+        }
+        String problemId = toId(name);
+        if (problemId.isEmpty()) {
+            problemId = getIdFromUrl();
+        }
+        String problemName = name;
+        Matcher matcher = NAME_PATTERN.matcher(name);
+        if (matcher.matches()) {
+            problemId = matcher.group(1);
+            problemName = matcher.group(2);
+        }
+        String platformId;
+        try {
+            platformId = ParseManager.getPlatformByUrl(url);
+        } catch (MalformedURLException exception) {
+            platformId = UNKNOWN_PLATFORM;
+        }
+        Problem problem = new Problem(problemId, problemName, platformId, group);
+        if (timeLimit > 0) problem.setTimeLimit(timeLimit);
+        if (memoryLimit > 0) problem.setMemoryLimit(memoryLimit);
+        problem.setTestType(testType);
+        problem.setInputFile(inputFile);
+        problem.setOutputFile(outputFile);
+        problem.setInteractive(interactive);
+        for (String[] test : tests) {
+            problem.addSampleTest(test[0], test[1]);
+        }
+        return problem;
+    }
+
+    private static String toId(String value) { return value.replaceAll("[^A-Za-z0-9_]", ""); }
+
+    // used for the names without latin letters and digits: the last segment of the URL path,
+    // or a hash of the name if the URL doesn't have one
+    private String getIdFromUrl() {
+        String path = url.replaceFirst("[?#].*", "").replaceFirst("/+$", "");
+        String problemId = toId(path.substring(path.lastIndexOf('/') + 1));
+        if (!problemId.isEmpty()) {
+            return problemId;
+        }
+        return "task" + Hash.of(name.getBytes(StandardCharsets.UTF_8)).substring(0, 8);
+    }
+}
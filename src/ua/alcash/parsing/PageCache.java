@@ -0,0 +1,151 @@
+package ua.alcash.parsing;
+
+import net.egork.chelper.util.FileUtilities;
+import ua.alcash.Configuration;
+import ua.alcash.util.Hash;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * On-disk cache of fetched web pages.
+ * Each page is stored in a file named by the hash of its URL. The file starts with the URL,
+ * followed by the fetch time and the hash of the content, and then the content itself.
+ * The content hash is verified on every read, so a damaged entry is fetched again rather than parsed.
+ * File modification time is updated on every access and used to evict the least recently used pages.
+ */
+class PageCache {
+    private static final String TEMPORARY_SUFFIX = ".tmp";  // entries are named by hashes, which have no suffix
+
+    private static Path directory;
+    private static long timeToLive;
+    private static long maxSize;
+    private static boolean offline;
+
+    static void configure() {
+        directory = Paths.get(Configuration.getWorkspaceDirectory(), Configuration.get("page cache directory"));
+        timeToLive = Configuration.getLong("page cache ttl") * 1000;
+        maxSize = Configuration.getLong("page cache size") << 20;
+        offline = Configuration.getBoolean("page cache offline");
+    }
+
+    static Path getDirectory() { return directory; }
+
+    static String getWebPageContent(String url) throws MalformedURLException {
+        Path path = directory.resolve(Hash.of(url.getBytes(StandardCharsets.UTF_8)));
+        Entry cached = Entry.read(path);
+        // in offline mode expired pages are still used, because there is no other source
+        if (cached != null && cached.url.equals(url)
+                && (offline || System.currentTimeMillis() - cached.fetchTime < timeToLive)) {
+            touch(path);
+            return cached.content;
+        }
+        if (offline) {
+            throw new MalformedURLException("Page is not cached: " + url);
+        }
+        String content = FileUtilities.getWebPageContent(url);
+        if (content != null) {
+            store(path, url, content);
+        }
+        return content;
+    }
+
+    static class Entry {
+        final String url;
+        final long fetchTime;
+        final String contentHash;
+        final String content;
+
+        Entry(String url, long fetchTime, String contentHash, String content) {
+            this.url = url;
+            this.fetchTime = fetchTime;
+            this.contentHash = contentHash;
+            this.content = content;
+        }
+
+        static Entry read(Path path) {
+            if (!Files.exists(path)) {
+                return null;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String url = reader.readLine();
+                String[] header = reader.readLine().split(" ");
+                StringBuilder content = new StringBuilder();
+                char[] buffer = new char[1 << 16];
+                int read;
+                while ((read = reader.read(buffer)) != -1) {
+                    content.append(buffer, 0, read);
+                }
+                Entry entry = new Entry(url, Long.parseLong(header[0]), header[1], content.toString());
+                // entries damaged outside of the cache are treated as missing
+                return entry.hasValidContent() ? entry : null;
+            } catch (Exception exception) {
+                return null;
+            }
+        }
+
+        boolean hasValidContent() { return contentHash.equals(Hash.of(content.getBytes(StandardCharsets.UTF_8))); }
+    }
+
+    private static void store(Path path, String url, String content) {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        byte[] header = (url + "\n" + System.currentTimeMillis() + " " + Hash.of(data) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        try {
+            Files.createDirectories(directory);
+            // the entry is written to a temporary file first, so that readers never see a partial entry
+            Path temporary = Files.createTempFile(directory, null, TEMPORARY_SUFFIX);
+            Files.write(temporary, header);
+            Files.write(temporary, data, StandardOpenOption.APPEND);
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            evict();
+        } catch (IOException ignored) {  // cache failures must not affect parsing
+        }
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static synchronized void evict() throws IOException {
+        List<Path> files = new ArrayList<>();
+        List<BasicFileAttributes> attributes = new ArrayList<>();
+        long totalSize = 0;
+        // the entries being written by other threads aren't counted, they are evicted after they are stored
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                file -> !file.getFileName().toString().endsWith(TEMPORARY_SUFFIX))) {
+            for (Path file : stream) {
+                BasicFileAttributes fileAttributes;
+                try {
+                    fileAttributes = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (NoSuchFileException exception) {  // deleted in the meantime
+                    continue;
+                }
+                files.add(file);
+                attributes.add(fileAttributes);
+                totalSize += fileAttributes.size();
+            }
+        }
+        if (totalSize <= maxSize) {
+            return;
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < files.size(); ++i) order.add(i);
+        order.sort(Comparator.comparing(i -> attributes.get(i).lastModifiedTime()));
+        for (int i = 0; i < order.size() && totalSize > maxSize; ++i) {
+            Files.deleteIfExists(files.get(order.get(i)));
+            totalSize -= attributes.get(order.get(i)).size();
+        }
+    }
+}
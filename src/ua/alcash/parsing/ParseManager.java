@@ -1,75 +1,51 @@
 package ua.alcash.parsing;
 
-import net.egork.chelper.parser.*;
+import net.egork.chelper.parser.Description;
+import net.egork.chelper.parser.DescriptionReceiver;
+import net.egork.chelper.parser.Parser;
 import net.egork.chelper.task.Task;
-import net.egork.chelper.util.FileUtilities;
 import ua.alcash.Configuration;
 import ua.alcash.Problem;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.net.MalformedURLException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * Created by Al.Cash on 5/8/17.
  */
 public class ParseManager {
-    private static final Map<String, Parser> PLATFORM_ID_TO_PARSER;
+    private static final Map<String, Platform> PLATFORMS;
 
-    private static final Map<String, String> PLATFORM_ID_TO_URL;
-    private static final Map<String, String> PLATFORM_ID_TO_CONTEST_URL;
+    // URL fragment (host, or host with the first path segment) -> platform
+    private static final Map<String, Platform> URL_INDEX;
 
     private static Map<String, String> platformIdToName = new HashMap<>();
 
     static {
-        Map<String, Parser> platforms = new HashMap<>();
-        platforms.put("atcoder", new AtCoderParser());
-        platforms.put("codechef", new CodeChefParser());
-        platforms.put("codeforces", new CodeforcesParser());
-        platforms.put("csacademy", new CSAcademyParser());
-        platforms.put("facebook", new FacebookParser());
-        platforms.put("gcj", new GCJParser());
-        platforms.put("hackerearth", new HackerEarthParser());
-        platforms.put("hackerrank", new HackerRankParser());
-        platforms.put("kattis", new KattisParser());
-        platforms.put("new-gcj", new NewGCJParser());
-        platforms.put("rcc", new RCCParser());
-        platforms.put("timus", new TimusParser());
-        platforms.put("usaco", new UsacoParser());
-        platforms.put("yandex", new YandexParser());
-        PLATFORM_ID_TO_PARSER = Collections.unmodifiableMap(platforms);
-
-        Map<String, String> platformUrls = new HashMap<>();
-        platformUrls.put("atcoder", "atcoder.jp");
-        platformUrls.put("codechef", "codechef.com");
-        platformUrls.put("codeforces", "codeforces.com");
-        platformUrls.put("csacademy", "csacademy.com");
-        platformUrls.put("facebook", "facebook.com/hackercup");
-        platformUrls.put("gcj", "code.google.com/codejam");
-        platformUrls.put("hackerearth", "hackerearth.com");
-        platformUrls.put("hackerrank", "hackerrank.com");
-        platformUrls.put("kattis", "open.kattis.com");
-        platformUrls.put("new-gcj", "codejam.withgoogle.com");
-        platformUrls.put("rcc", "russiancodecup.ru");
-        platformUrls.put("timus", "acm.timus.ru");
-        platformUrls.put("usaco", "usaco.org");
-        platformUrls.put("yandex", "contest.yandex");
-        PLATFORM_ID_TO_URL = Collections.unmodifiableMap(platformUrls);
-
-        Map<String, String> contestUrls = new HashMap<>();
-        contestUrls.put("codechef", "www.codechef.com/");
-        contestUrls.put("codeforces", "codeforces.com/contest/");
-        contestUrls.put("gcj", "code.google.com/codejam/contest/");
-        contestUrls.put("kattis", "open.kattis.com/contests/");
-        contestUrls.put("new-gcj", "codejam.withgoogle.com/");
-        contestUrls.put("rcc", "/championship/round/");
-        contestUrls.put("timus", "acm.timus.ru/problemset.aspx?space=");
-        PLATFORM_ID_TO_CONTEST_URL = Collections.unmodifiableMap(contestUrls);
+        Map<String, Platform> platforms = new HashMap<>();
+        Map<String, Platform> urlIndex = new HashMap<>();
+        for (PlatformProvider provider : ServiceLoader.load(PlatformProvider.class)) {
+            for (Platform platform : provider.getPlatforms()) {
+                platforms.put(platform.getId(), platform);
+                for (String platformUrl : platform.getUrls()) {
+                    urlIndex.put(platformUrl, platform);
+                }
+            }
+        }
+        PLATFORMS = Collections.unmodifiableMap(platforms);
+        URL_INDEX = Collections.unmodifiableMap(urlIndex);
     }
 
     public static void configure() {
+        PageCache.configure();
         platformIdToName.clear();
-        PLATFORM_ID_TO_PARSER.forEach((key, value) -> {
+        PLATFORMS.forEach((key, value) -> {
             String platformName = Configuration.getPlatform(key);
             if (platformName != null) {
                 platformIdToName.put(key, platformName);
@@ -88,17 +64,35 @@ public class ParseManager {
         return platformIds;
     }
 
-    private static String getPlatformByUrl(String url) throws MalformedURLException {
-        List<String> platformIds = new ArrayList<>();
-        PLATFORM_ID_TO_URL.forEach((key, value) -> {
-            if (url.contains(value)) platformIds.add(key);
-        });
-        if (platformIds.isEmpty()) {
+    static String getPlatformByUrl(String url) throws MalformedURLException {
+        // split the URL into host labels and the first path segment
+        String address = url.replaceFirst("^[A-Za-z]+://", "").toLowerCase();
+        int hostEnd = 0;
+        while (hostEnd < address.length() && "/?#".indexOf(address.charAt(hostEnd)) == -1) ++hostEnd;
+        int pathEnd = hostEnd < address.length() && address.charAt(hostEnd) == '/' ? hostEnd + 1 : hostEnd;
+        while (pathEnd < address.length() && "/?#".indexOf(address.charAt(pathEnd)) == -1) ++pathEnd;
+        String[] labels = address.substring(0, hostEnd).replaceFirst(":\\d+$", "").split("\\.");
+        String firstSegment = address.substring(hostEnd, pathEnd);
+
+        // any consecutive labels of the host may form a platform URL, like "contest.yandex" in "contest.yandex.ru"
+        Set<Platform> platforms = new HashSet<>();
+        for (int first = 0; first < labels.length; ++first) {
+            StringBuilder host = new StringBuilder();
+            for (int last = first; last < labels.length; ++last) {
+                if (last > first) host.append('.');
+                host.append(labels[last]);
+                Platform platform = URL_INDEX.get(host.toString());
+                if (platform != null) platforms.add(platform);
+                platform = URL_INDEX.get(host + firstSegment);
+                if (platform != null) platforms.add(platform);
+            }
+        }
+        if (platforms.isEmpty()) {
             throw new MalformedURLException("Unrecognized platform.");
-        } else if (platformIds.size() > 1) {
+        } else if (platforms.size() > 1) {
             throw new MalformedURLException("Ambiguous platform.");
         } else {
-            return platformIds.get(0);
+            return platforms.iterator().next().getId();
         }
     }
 
@@ -107,7 +101,7 @@ public class ParseManager {
         if (!platformIdToName.containsKey(platformId)) {
             throw new ParserConfigurationException("Unsupported platform.");
         }
-        Parser parser = PLATFORM_ID_TO_PARSER.get(platformId);
+        Parser parser = PLATFORMS.get(platformId).getParser();
         Collection<Task> tasks = parser.parseTaskFromHTML(page);
         if (tasks.isEmpty()) {
             throw new ParserConfigurationException("Parsing failed.");
@@ -122,21 +116,26 @@ public class ParseManager {
     public static Collection<Problem> parseProblemByUrl(String url)
             throws MalformedURLException, ParserConfigurationException {
         String platformId = getPlatformByUrl(url);
-        String html = FileUtilities.getWebPageContent(url);
+        String html = PageCache.getWebPageContent(url);
         if (html == null) {
             throw new MalformedURLException("Unable to get web page content.");
         }
         return parseProblemsFromHtml(platformId, html);
     }
 
+    private static int getContestParsingThreads(String platformId) {
+        return Configuration.getInt("contest parsing threads " + platformId,
+                Configuration.getInt("contest parsing threads"));
+    }
+
     private static class ContestReceiver implements DescriptionReceiver {
         String platformId;
-        Parser parser;
-        Collection<Problem> problems = new ArrayList<>();
+        ExecutorService executor;
+        List<Future<Problem>> problems = new ArrayList<>();
 
-        ContestReceiver(String platformId, Parser parser) {
+        ContestReceiver(String platformId, ExecutorService executor) {
             this.platformId = platformId;
-            this.parser = parser;
+            this.executor = executor;
         }
 
         @Override
@@ -144,28 +143,50 @@ public class ParseManager {
 
         @Override
         public void receiveDescriptions(Collection<Description> descriptions) {
+            // each problem page is fetched and parsed in parallel, the order is preserved by the futures list
+            Platform platform = PLATFORMS.get(platformId);
             for (Description description : descriptions) {
-                problems.add(new Problem(platformId, parser.parseTask(description)));
+                problems.add(executor.submit(() ->
+                        new Problem(platformId, platform.newParser().parseTask(description))));
+            }
+        }
+
+        // problems are passed to the consumer in order, each one as soon as it and all the previous are parsed
+        void deliverProblems(Consumer<Problem> consumer) throws ParserConfigurationException {
+            try {
+                for (Future<Problem> problem : problems) {
+                    consumer.accept(problem.get());
+                }
+            } catch (ExecutionException exception) {
+                throw new ParserConfigurationException("Problem parsing failed: " + exception.getCause());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new ParserConfigurationException("Parsing was interrupted.");
             }
         }
     }
 
-    public static Collection<Problem> parseContestByUrl(String url)
+    public static void parseContestByUrl(String url, Consumer<Problem> consumer)
             throws MalformedURLException, ParserConfigurationException {
         String platformId = getPlatformByUrl(url);
-        if (!PLATFORM_ID_TO_CONTEST_URL.containsKey(platformId)) {
+        String contestUrl = PLATFORMS.get(platformId).getContestUrl();
+        if (contestUrl == null) {
             throw new MalformedURLException("Contest parsing is not supported for " + platformId);
         }
-        String contestUrl = PLATFORM_ID_TO_CONTEST_URL.get(platformId);
         int index = url.indexOf(contestUrl);
         if (index == -1) {
             throw new MalformedURLException("Invalid contest URL for " + platformId);
         }
         String contestId = url.substring(index + contestUrl.length());
         contestId = contestId.replaceFirst("[\\$\\?#/\\\\].*", "");
-        Parser parser = PLATFORM_ID_TO_PARSER.get(platformId);
-        ContestReceiver contestReceiver = new ContestReceiver(platformId, parser);
-        parser.parseContest(contestId, contestReceiver);
-        return contestReceiver.problems;
+        Parser parser = PLATFORMS.get(platformId).getParser();
+        ExecutorService executor = Executors.newFixedThreadPool(getContestParsingThreads(platformId));
+        try {
+            ContestReceiver contestReceiver = new ContestReceiver(platformId, executor);
+            parser.parseContest(contestId, contestReceiver);
+            contestReceiver.deliverProblems(consumer);
+        } finally {
+            executor.shutdownNow();
+        }
     }
 }
@@ -0,0 +1,51 @@
+package ua.alcash.parsing;
+
+import net.egork.chelper.parser.Parser;
+
+import java.util.function.Supplier;
+
+/**
+ * Problem platform: its ID, URL fragments used to recognize its pages and the parser.
+ * The parser is created on the first use, so that unused platforms cost nothing.
+ */
+public final class Platform {
+    private final String id;
+    private final String[] urls;
+    private final String contestUrl;
+    private final Supplier<Parser> parserFactory;
+
+    private volatile Parser parser;
+
+    /**
+     * @param urls URL fragments in the form of "host" or "host/first-path-segment"
+     * @param contestUrl part of the contest URL preceding contest ID, or null if contest parsing isn't supported
+     */
+    public Platform(String id, String[] urls, String contestUrl, Supplier<Parser> parserFactory) {
+        this.id = id;
+        this.urls = urls;
+        this.contestUrl = contestUrl;
+        this.parserFactory = parserFactory;
+    }
+
+    public String getId() { return id; }
+
+    String[] getUrls() { return urls; }
+
+    String getContestUrl() { return contestUrl; }
+
+    Parser getParser() {
+        Parser result = parser;
+        if (result == null) {
+            synchronized (this) {
+                result = parser;
+                if (result == null) {
+                    parser = result = parserFactory.get();
+                }
+            }
+        }
+        return result;
+    }
+
+    // parsers keep state while parsing, so the tasks parsed in parallel need their own ones
+    Parser newParser() { return parserFactory.get(); }
+}
@@ -0,0 +1,11 @@
+package ua.alcash.parsing;
+
+import java.util.List;
+
+/**
+ * Service interface for supplying platforms to ParseManager.
+ * Implementations are listed in META-INF/services and discovered with ServiceLoader.
+ */
+public interface PlatformProvider {
+    List<Platform> getPlatforms();
+}
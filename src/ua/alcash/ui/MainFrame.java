@@ -2,6 +2,7 @@ package ua.alcash.ui;
 
 import ua.alcash.Configuration;
 import ua.alcash.Problem;
+import ua.alcash.Receiver;
 import ua.alcash.filesystem.ProblemSync;
 import ua.alcash.filesystem.WorkspaceManager;
 import ua.alcash.parsing.ParseManager;
@@ -10,17 +11,20 @@ import ua.alcash.util.AbstractActionWithInteger;
 import javax.swing.*;
 import java.awt.event.*;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Al.Cash on 5/9/17.
  */
-public class MainFrame extends JFrame {
+public class MainFrame extends JFrame implements Receiver {
     private JPanel rootPanel;
     private JTabbedPane problemsPane;
 
     private JMenuItem newContest;
     private JMenuItem newProblem;
+    private JMenuItem openProblem;
     private JMenuItem saveWorkspace;
     private JMenuItem switchWorkspace;
     private JMenuItem clearWorkspace;
@@ -35,8 +39,23 @@ public class MainFrame extends JFrame {
         try {
             workspaceManager = new WorkspaceManager(this);
         } catch (IOException exception) {
-            receiveError("Failed to start workspace watcher, it's highly recommended to restart " +
-                    Configuration.PROJECT_NAME + "\n" + exception.getMessage());
+            // shown before the exit, so it's not passed to the event thread
+            JOptionPane.showMessageDialog(null, "Failed to start workspace watcher, " +
+                            Configuration.PROJECT_NAME + " can't run.\n" + exception.getMessage(),
+                    Configuration.PROJECT_NAME, JOptionPane.ERROR_MESSAGE);
+            throw new InstantiationException("Workspace watcher wasn't started.");
+        }
+        if (!workspaceManager.setWorkspace(System.getProperty("user.dir"))) {
+            showWarning("Current directory doesn't contain valid configuration file "
+                    + Configuration.CONFIGURATION_FILE_NAME + "\nPlease, select another directory.");
+            while (true) {
+                int result = selectWorkspace();
+                if (result == JOptionPane.CLOSED_OPTION) {
+                    throw new InstantiationException("Working directory wasn't provided.");
+                } else if (result == JOptionPane.YES_OPTION) {
+                    break;
+                }
+            }
         }
         setTitle(Configuration.PROJECT_NAME);
         setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
@@ -55,6 +74,7 @@ public class MainFrame extends JFrame {
         } catch (Exception ignored) {
         }
         configure();
+        restoreSession();
 
         pack();
         setLocationRelativeTo(null);
@@ -67,11 +87,46 @@ public class MainFrame extends JFrame {
         setupShortcuts();
     }
 
+    private void restoreSession() {
+        try {
+            for (ProblemSync problemSync : workspaceManager.restoreSession()) {
+                problemsPane.addTab(problemSync.getProblem().getId(), new ProblemPanel(this, problemSync));
+            }
+        } catch (IOException exception) {
+            receiveError("Restoring the previous session failed:\n" + exception.getMessage());
+        }
+    }
+
+    // called from the constructor on the main thread, and from the menu on the event dispatch thread
+    private int selectWorkspace() {
+        JFileChooser fileChooser = new JFileChooser(workspaceManager.getWorkspaceDirectory());
+        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        final AtomicInteger result = new AtomicInteger();
+        if (SwingUtilities.isEventDispatchThread()) {
+            result.set(fileChooser.showOpenDialog(this));
+        } else {
+            try {
+                SwingUtilities.invokeAndWait(() -> result.set(fileChooser.showOpenDialog(this)));
+            } catch (Exception ignored) {
+            }
+        }
+        if (result.get() == JFileChooser.APPROVE_OPTION) {
+            if (!workspaceManager.setWorkspace(fileChooser.getSelectedFile().getAbsolutePath())) {
+                showWarning("Selected directory doesn't contain valid configuration file "
+                        + Configuration.CONFIGURATION_FILE_NAME);
+                return JOptionPane.NO_OPTION;
+            }
+            return JOptionPane.YES_OPTION;
+        }
+        return JOptionPane.CLOSED_OPTION;
+    }
+
     private void createMainMenu() {
         JMenuBar menuBar = new JMenuBar();
         JMenu newMenu = new JMenu();
         newContest = new JMenuItem();
         newProblem = new JMenuItem();
+        openProblem = new JMenuItem();
         JMenu workspaceMenu = new JMenu();
         saveWorkspace = new JMenuItem();
         clearWorkspace = new JMenuItem();
@@ -89,6 +144,10 @@ public class MainFrame extends JFrame {
         newProblem.addActionListener(event -> problemDialog.display());
         newMenu.add(newProblem);
 
+        openProblem.setText("Problem from directory");
+        openProblem.addActionListener(event -> openProblem());
+        newMenu.add(openProblem);
+
         menuBar.add(newMenu);
 
         workspaceMenu.setText("Workspace");
@@ -103,15 +162,20 @@ public class MainFrame extends JFrame {
         workspaceMenu.add(saveWorkspace);
 
         clearWorkspace.setText("Close problems");
-        clearWorkspace.addActionListener(event -> closeWorkspace());
+        clearWorkspace.addActionListener(event -> {
+            if (closeWorkspace()) {
+                workspaceManager.saveSession();
+            }
+        });
         workspaceMenu.add(clearWorkspace);
 
         switchWorkspace.setText("Switch");
         switchWorkspace.addActionListener(event -> {
-            if (workspaceManager.selectWorkspace() == JOptionPane.YES_OPTION) {
+            if (selectWorkspace() == JOptionPane.YES_OPTION) {
                 workspaceManager.closeAllProblems(false);
                 problemsPane.removeAll();
                 configure();
+                restoreSession();
             }
         });
         workspaceMenu.add(switchWorkspace);
@@ -135,6 +199,9 @@ public class MainFrame extends JFrame {
         JMenuItem closeProblem = new JMenuItem("Close problem");
         closeProblem.addActionListener(event -> closeProblem(false));
         singleTabPopupMenu.add(closeProblem);
+        JMenuItem importTests = new JMenuItem("Import tests");
+        importTests.addActionListener(event -> importTests());
+        singleTabPopupMenu.add(importTests);
         JMenuItem deleteProblem = new JMenuItem("Delete problem");
         deleteProblem.addActionListener(event -> closeProblem(true));
         singleTabPopupMenu.add(deleteProblem);
@@ -182,29 +249,77 @@ public class MainFrame extends JFrame {
         }
     }
 
+    // the calls from the other threads are passed to the event dispatch thread
+    private static void runOnEventThread(Runnable action) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            action.run();
+        } else {
+            SwingUtilities.invokeLater(action);
+        }
+    }
+
+    @Override
+    public void runAndWait(Runnable action) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            action.run();
+            return;
+        }
+        try {
+            SwingUtilities.invokeAndWait(action);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException exception) {
+            Throwable cause = exception.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+    }
+
+    @Override
     public void receiveProblems(Collection<Problem> problems) {
-        int firstProblemIndex = problemsPane.getTabCount();
+        runOnEventThread(() -> {
+            addProblems(problems, true);
+            workspaceManager.updateWorkspace(true);
+        });
+    }
+
+    // when problems are received in parts, only the first part should switch the selected tab,
+    // and the workspace is regenerated once after the last part
+    void addProblems(Collection<Problem> problems, boolean selectFirst) {
+        int selectedIndex = -1;
         for (Problem problem : problems) {
             try {
-                ProblemSync problemSync = workspaceManager.addProblem(problem);
-                ProblemPanel panel = new ProblemPanel(this, problemSync);
-                problemsPane.addTab(problem.getId(), panel);
+                int index = workspaceManager.findProblem(problem);
+                if (index != -1) {  // the same problem was received again
+                    workspaceManager.mergeProblem(index, problem);
+                    ((ProblemPanel) problemsPane.getComponentAt(index)).updateInterfaceFromProblem();
+                } else {
+                    ProblemSync problemSync = workspaceManager.addProblem(problem);
+                    ProblemPanel panel = new ProblemPanel(this, problemSync);
+                    problemsPane.addTab(problem.getId(), panel);
+                    index = problemsPane.getTabCount() - 1;
+                }
+                if (selectedIndex == -1) selectedIndex = index;
             } catch (IOException exception) {
                 receiveError(exception.getMessage());
             }
         }
-        if (firstProblemIndex < problemsPane.getTabCount()) {
-            problemsPane.setSelectedIndex(firstProblemIndex);
+        if (selectFirst && selectedIndex != -1) {
+            problemsPane.setSelectedIndex(selectedIndex);
         }
-        workspaceManager.updateWorkspace(true);
     }
 
+    void problemSetChanged() { workspaceManager.updateWorkspace(true); }
+
+    @Override
     public void receiveError(String message) {
-        JOptionPane.showMessageDialog(this, message,
-                Configuration.PROJECT_NAME, JOptionPane.ERROR_MESSAGE);
+        runOnEventThread(() -> JOptionPane.showMessageDialog(this, message,
+                Configuration.PROJECT_NAME, JOptionPane.ERROR_MESSAGE));
     }
 
-    public void receiveWarning(String message) {
+    @Override
+    public void receiveWarning(String message) { runOnEventThread(() -> showWarning(message)); }
+
+    private void showWarning(String message) {
         JOptionPane.showMessageDialog(this, message,
                 Configuration.PROJECT_NAME, JOptionPane.WARNING_MESSAGE);
     }
@@ -216,6 +331,39 @@ public class MainFrame extends JFrame {
         workspaceManager.updateWorkspace(true);
     }
 
+    private void openProblem() {
+        JFileChooser fileChooser = new JFileChooser(Configuration.getWorkspaceDirectory());
+        fileChooser.setDialogTitle("Select a problem directory");
+        fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            try {
+                ProblemSync problemSync = workspaceManager.openProblem(fileChooser.getSelectedFile().toPath());
+                problemsPane.addTab(problemSync.getProblem().getId(), new ProblemPanel(this, problemSync));
+                problemsPane.setSelectedIndex(problemsPane.getTabCount() - 1);
+                workspaceManager.updateWorkspace(true);
+            } catch (IOException exception) {
+                receiveError("Opening the problem failed:\n" + exception.getMessage());
+            }
+        }
+    }
+
+    private void importTests() {
+        int index = problemsPane.getSelectedIndex();
+        if (index == -1) return;
+        JFileChooser fileChooser = new JFileChooser(System.getProperty("user.dir"));
+        fileChooser.setDialogTitle("Select a directory or an archive with tests");
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_AND_DIRECTORIES);
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            // the files are copied in background, the errors are reported after that
+            workspaceManager.importTests(index, fileChooser.getSelectedFile().toPath()).whenComplete(
+                    (result, exception) -> {
+                        if (exception != null) {
+                            receiveError("Importing tests failed:\n" + exception.getCause().getMessage());
+                        }
+                    });
+        }
+    }
+
     private boolean closeWorkspace() {
         int confirm = JOptionPane.showConfirmDialog(this,
                 "Keep the workspace content on the disk?",
@@ -231,8 +379,12 @@ public class MainFrame extends JFrame {
 
     private void confirmAndExit() {
         if (closeWorkspace()) {
-            workspaceManager.stop();
-            System.exit(0);
+            setVisible(false);
+            // the changes still being written can wait for the event thread, so they are awaited on another one
+            new Thread(() -> {
+                workspaceManager.stop();
+                System.exit(0);
+            }, "ExitThread").start();
         }
     }
 
@@ -70,10 +70,29 @@ public class MultilineTableCellRenderer extends JTextArea implements TableCellRe
         } else {
             setText("");
         }
+        highlightSlowest(table, row, column);
         adjustRowHeight(table, row, column);
         return this;
     }
 
+    /**
+     * Shows the slowest test result in bold, and the total time of the tests in the tooltip of the results.
+     */
+    private void highlightSlowest(JTable table, int row, int column) {
+        setToolTipText(null);
+        if (!(table.getModel() instanceof TestsTableModel) || column != TestsTableModel.RESULT_COLUMN) {
+            return;
+        }
+        TestsTableModel model = (TestsTableModel) table.getModel();
+        if (model.getSlowestIndex() == -1) {
+            return;
+        }
+        if (row == model.getSlowestIndex()) {
+            setFont(getFont().deriveFont(Font.BOLD));
+        }
+        setToolTipText(String.format("Total time: %.3f", model.getTotalTime()));
+    }
+
     /**
      * Calculates the new preferred height for a given row, and sets the height on the table.
      */
@@ -12,7 +12,7 @@ import java.awt.event.WindowEvent;
 import java.net.MalformedURLException;
 import java.text.ParseException;
 import java.util.Calendar;
-import java.util.Collection;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
@@ -104,9 +104,10 @@ public class NewContestDialog extends JDialog {
         abortButton.setEnabled(!enabled);
     }
 
-    class BackgroundContestParser extends SwingWorker<Collection<Problem>, Object> {
+    class BackgroundContestParser extends SwingWorker<Void, Problem> {
         NewContestDialog dialog;
         String url;
+        boolean firstReceived = false;
 
         BackgroundContestParser(NewContestDialog dialog, String url) {
             this.dialog = dialog;
@@ -114,19 +115,31 @@ public class NewContestDialog extends JDialog {
         }
 
         @Override
-        public Collection<Problem> doInBackground() throws MalformedURLException, ParserConfigurationException {
-            return ParseManager.parseContestByUrl(url);
+        public Void doInBackground() throws MalformedURLException, ParserConfigurationException {
+            ParseManager.parseContestByUrl(url, this::publish);
+            return null;
+        }
+
+        @Override
+        protected void process(List<Problem> problems) {
+            if (isCancelled()) return;
+            dialog.parent.addProblems(problems, !firstReceived);
+            firstReceived = true;
         }
 
         @Override
         protected void done() {
             try {
-                dialog.parent.receiveProblems(get());
+                get();
                 dialog.closeDialog();
             } catch (ExecutionException exception) {
                 dialog.parent.receiveError(exception.getMessage());
             } catch (Exception ignored) {
             } finally {
+                // the problems received before a failure or cancellation stay open
+                if (firstReceived) {
+                    dialog.parent.problemSetChanged();
+                }
                 dialog.toggleButtons(true);
             }
         }
@@ -14,6 +14,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by Al.Cash on 5/9/17.
@@ -49,26 +50,17 @@ public class ProblemPanel extends JPanel {
         add(rootPanel);
 
         this.problemSync = problemSync;
-        Problem problem = problemSync.getProblem();
-        problemName.setText(problem.getFullName());
-        timeLimitSpinner.setModel(new SpinnerNumberModel(
-                problem.getTimeLimit(), 0, 9999, 1));
-        memoryLimitSpinner.setModel(new SpinnerNumberModel(
-                problem.getMemoryLimit(), 0, 9999, 1));
         testTypeComboBox.setModel(new DefaultComboBoxModel<>(new String[]{
                 TestType.SINGLE.toString(),
                 TestType.MULTI_NUMBER.toString(),
                 TestType.MULTI_EOF.toString()
         }));
-        testTypeComboBox.setSelectedIndex(problem.getTestType().ordinal());
-        inputFileField.setText(problem.getInputFile());
-        outputFileField.setText(problem.getOutputFile());
-        interactiveCheckBox.setSelected(problem.getInteractive());
-        customCheckerCheckBox.setSelected(problem.getCustomChecker());
-        checkerParamsField.setText(problem.getCheckerParams());
+        updateInterfaceFromProblem();
 
         testsTable.setDefaultRenderer(String.class, new MultilineTableCellRenderer());
-        testsTable.setModel(problemSync.getTableModel());
+        TestsTableModel testsTableModel = new TestsTableModel(problemSync.getTestCaseSet());
+        problemSync.setTestsListener(testsTableModel);
+        testsTable.setModel(testsTableModel);
         testsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 
         ListSelectionListener listSelectionListener = event -> {
@@ -135,18 +127,27 @@ public class ProblemPanel extends JPanel {
         return index;
     }
 
-    interface RunnableIO { void run() throws IOException; }
+    interface RunnableIO { CompletableFuture<Void> run() throws IOException; }
 
+    // files are changed in background, their errors are reported after the action returns
     private void runAndCheck(RunnableIO f) {
         try {
-            f.run();
+            f.run().whenComplete((result, exception) -> {
+                if (exception != null) {
+                    SwingUtilities.invokeLater(() -> showError(exception.getCause().getMessage()));
+                }
+            });
         } catch (IOException exception) {
-            JOptionPane.showMessageDialog(this, exception.getMessage(),
-                    Configuration.PROJECT_NAME,
-                    JOptionPane.ERROR_MESSAGE);
+            showError(exception.getMessage());
         }
     }
 
+    private void showError(String message) {
+        JOptionPane.showMessageDialog(this, message,
+                Configuration.PROJECT_NAME,
+                JOptionPane.ERROR_MESSAGE);
+    }
+
     private void newTestCase() {
         TestCase newTestCase = new TestCase(problemSync.getNextTestName());
         TestCaseDialog dialog = new TestCaseDialog(parentFrame, newTestCase);
@@ -186,6 +187,21 @@ public class ProblemPanel extends JPanel {
         }
     }
 
+    void updateInterfaceFromProblem() {
+        Problem problem = problemSync.getProblem();
+        problemName.setText(problem.getFullName());
+        timeLimitSpinner.setModel(new SpinnerNumberModel(
+                problem.getTimeLimit(), 0, 9999, 1));
+        memoryLimitSpinner.setModel(new SpinnerNumberModel(
+                problem.getMemoryLimit(), 0, 9999, 1));
+        testTypeComboBox.setSelectedIndex(problem.getTestType().ordinal());
+        inputFileField.setText(problem.getInputFile());
+        outputFileField.setText(problem.getOutputFile());
+        interactiveCheckBox.setSelected(problem.getInteractive());
+        customCheckerCheckBox.setSelected(problem.getCustomChecker());
+        checkerParamsField.setText(problem.getCheckerParams());
+    }
+
     void updateProblemFromInterface() {
         try {
             timeLimitSpinner.commitEdit();
@@ -2,6 +2,7 @@ package ua.alcash.ui;
 
 import ua.alcash.Configuration;
 import ua.alcash.TestCase;
+import ua.alcash.TestContent;
 
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
@@ -59,9 +60,10 @@ public class TestCaseDialog extends JDialog {
             }
         });
 
-        inputTextArea.setText(testCase.getInput());
-        expectedOutputTextArea.setText(testCase.getExpectedOutput());
-        programOutputTextArea.setText(testCase.getProgramOutput());
+        // the full data is loaded for editing, the table shows only the previews
+        showContent(inputTextArea, testCase.getInput());
+        showContent(expectedOutputTextArea, testCase.getExpectedOutput());
+        showContent(programOutputTextArea, testCase.getProgramOutput());
         inputTextArea.getDocument().addDocumentListener(inputListener);
         expectedOutputTextArea.getDocument().addDocumentListener(answerListener);
 
@@ -70,7 +72,11 @@ public class TestCaseDialog extends JDialog {
         solvedCheckBox.addActionListener(event -> {
             boolean solved = solvedCheckBox.isSelected();
             saveButton.setEnabled(somethingChanged());
-            expectedOutputTextArea.setText(solved ? testCase.getProgramOutput() : testCase.getExpectedOutput());
+            if (solved) {
+                expectedOutputTextArea.setText(programOutputTextArea.getText());
+            } else {
+                showContent(expectedOutputTextArea, testCase.getExpectedOutput());
+            }
             expectedOutputTextArea.setEnabled(!solved);
         });
         setupShortcuts();
@@ -79,6 +85,16 @@ public class TestCaseDialog extends JDialog {
         setLocationRelativeTo(parent);
     }
 
+    // the tests too large to edit are shown by their previews, so that they aren't loaded into memory
+    private static void showContent(JTextArea textArea, TestContent content) {
+        if (content.isEditable()) {
+            textArea.setText(content.getText());
+        } else {
+            textArea.setText(content.getPreview() + "\n\n(" + content.getSize() + " bytes, too large to edit here)");
+            textArea.setEditable(false);
+        }
+    }
+
     private void setupShortcuts() {
         // escape key will close the dialog
         getRootPane().getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).put(
@@ -1,19 +1,27 @@
 package ua.alcash.ui;
 
-import ua.alcash.TestCase;
+import ua.alcash.ExecutionResult;
+import ua.alcash.TestCaseStore;
+import ua.alcash.TestSetListener;
 
+import javax.swing.event.TableModelEvent;
 import javax.swing.table.AbstractTableModel;
-import java.util.ArrayList;
 
 /**
  * Created by Al.Cash on 5/9/17.
  */
-public class TestsTableModel extends AbstractTableModel {
-    private ArrayList<TestCase> testCases;
+public class TestsTableModel extends AbstractTableModel implements TestSetListener {
+    private TestCaseStore testCases;
     private final String[] columnNames = {"Input", "Expected output", "Program output", "Result"};
     private final Class[] columnClasses = {String.class, String.class, String.class, String.class};
+    static final int RESULT_COLUMN = 3;
 
-    public TestsTableModel(ArrayList<TestCase> testCases) { this.testCases = testCases; }
+    // aggregates of the results, recomputed after the table changes
+    private boolean aggregatesValid = false;
+    private double totalTime;
+    private int slowestIndex = -1;
+
+    public TestsTableModel(TestCaseStore testCases) { this.testCases = testCases; }
 
     @Override
     public int getRowCount() { return testCases.size(); }
@@ -31,27 +39,79 @@ public class TestsTableModel extends AbstractTableModel {
     public Object getValueAt(int rowIndex, int columnIndex) {
         switch (columnIndex) {
             case 0:
-                return testCases.get(rowIndex).getInput();
+                return testCases.get(rowIndex).getInput().getPreview();
             case 1:
-                return testCases.get(rowIndex).getExpectedOutput();
+                return testCases.get(rowIndex).getExpectedOutput().getPreview();
             case 2:
-                return testCases.get(rowIndex).getProgramOutput();
+                return testCases.get(rowIndex).getProgramOutput().getPreview();
             case 3:
-                return testCases.get(rowIndex).getExecutionResults("\n");
+                return testCases.get(rowIndex).getExecutionResult().getDisplayText();
             default:
                 throw new UnsupportedOperationException("Implementation error: invalid columnIndex.");
         }
     }
 
+    @Override
     public void testCaseUpdated(int index) { fireTableRowsUpdated(index, index); }
 
+    @Override
     public void testCaseAdded() { fireTableRowsInserted(getRowCount() - 1, getRowCount() - 1); }
 
+    @Override
+    public void testCasesAdded(int count) { fireTableRowsInserted(getRowCount() - count, getRowCount() - 1); }
+
+    @Override
     public void testCaseDeleted(int index) { fireTableRowsDeleted(index, index); }
 
-    public void executionResultsUpdated() {
-        for (int row = 0; row < getRowCount(); ++row) {
-            fireTableCellUpdated(row, 3);
+    // the slowest row is marked when it's drawn, so the rows which gain or lose the mark are repainted too;
+    // the tooltips are made when they are shown, so they don't need a repaint
+    @Override
+    public void executionResultsUpdated(int index) {
+        int previousSlowest = slowestIndex;  // the last computed one is the one that was drawn
+        fireTableCellUpdated(index, RESULT_COLUMN);
+        int slowest = getSlowestIndex();
+        if (slowest == previousSlowest) return;
+        if (previousSlowest != -1 && previousSlowest != index && previousSlowest < getRowCount()) {
+            fireTableCellUpdated(previousSlowest, RESULT_COLUMN);
+        }
+        if (slowest != -1 && slowest != index) {
+            fireTableCellUpdated(slowest, RESULT_COLUMN);
+        }
+    }
+
+    // rows aren't sorted by time, because test cases are addressed by the row index
+    @Override
+    public void fireTableChanged(TableModelEvent event) {
+        aggregatesValid = false;
+        super.fireTableChanged(event);
+    }
+
+    // sum of the wall times of the tests that were run
+    double getTotalTime() {
+        updateAggregates();
+        return totalTime;
+    }
+
+    // index of the test with the largest wall time, -1 if no test was run
+    int getSlowestIndex() {
+        updateAggregates();
+        return slowestIndex;
+    }
+
+    private void updateAggregates() {
+        if (aggregatesValid) return;
+        totalTime = 0;
+        slowestIndex = -1;
+        ExecutionResult slowest = null;
+        for (int i = 0; i < testCases.size(); ++i) {
+            ExecutionResult result = testCases.get(i).getExecutionResult();
+            if (!result.hasTime()) continue;
+            totalTime += result.getWallTime();
+            if (slowest == null || result.compareTo(slowest) > 0) {
+                slowest = result;
+                slowestIndex = i;
+            }
         }
+        aggregatesValid = true;
     }
 }
@@ -0,0 +1,52 @@
+package ua.alcash.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content hashes used to recognize identical data without comparing it.
+ */
+public class Hash {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-1 is not supported.", exception);
+        }
+    }
+
+    public static String toHex(byte[] hash) {
+        char[] result = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; ++i) {
+            result[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 15];
+            result[2 * i + 1] = HEX_DIGITS[hash[i] & 15];
+        }
+        return new String(result);
+    }
+
+    public static String of(byte[] data) { return of(data, 0, data.length); }
+
+    public static String of(byte[] data, int offset, int length) {
+        MessageDigest digest = newDigest();
+        digest.update(data, offset, length);
+        return toHex(digest.digest());
+    }
+
+    public static String of(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream stream = Files.newInputStream(path)) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+}
@@ -0,0 +1,39 @@
+package ua.alcash.util;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks one at a time in the order of submission on a shared executor,
+ * so that the tasks of different serial executors run in parallel.
+ */
+public class SerialExecutor implements Executor {
+    private final Executor executor;
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private boolean running = false;
+
+    public SerialExecutor(Executor executor) { this.executor = executor; }
+
+    @Override
+    public synchronized void execute(Runnable task) {
+        tasks.add(() -> {
+            try {
+                task.run();
+            } finally {
+                scheduleNext();
+            }
+        });
+        if (!running) {
+            scheduleNext();
+        }
+    }
+
+    private synchronized void scheduleNext() {
+        Runnable next = tasks.poll();
+        running = next != null;
+        if (running) {
+            executor.execute(next);
+        }
+    }
+}
@@ -2,6 +2,8 @@
 #include "solution.h"
 
 #include <chrono>
+#include <cstdint>
+#include <cstdio>
 #include <cstdlib>
 #include <fstream>
 #include <iomanip>
@@ -10,7 +12,13 @@
 #include <string>
 #include <vector>
 
+#include <arpa/inet.h>
+#include <fcntl.h>
+#include <netinet/in.h>
+#include <netinet/tcp.h>
 #include <signal.h>
+#include <sys/resource.h>
+#include <sys/socket.h>
 #include <sys/time.h>
 #include <sys/wait.h>
 #include <unistd.h>
@@ -37,6 +45,104 @@ struct TestCase {
     string answerFileName;
 };
 
+// status log consists of fixed size records, which are only appended during the run,
+// the layout and verdict codes must match ua.alcash.filesystem.StatusLog
+enum Verdict : int32_t {
+    RUN_STARTED = 0,  // test index is the number of tests, memory is the run ID
+    RUNNING,
+    OK,
+    WRONG_ANSWER,
+    RUNTIME_ERROR,
+    TIME_LIMIT_EXCEEDED,
+    JUDGEMENT_ERROR,
+    NO_ANSWER,
+    RUN_FINISHED,  // test index is the number of tests
+};
+
+struct StatusRecord {
+    int32_t testIndex;
+    int32_t verdict;
+    double wallTime;  // seconds
+    double cpuTime;  // seconds
+    int64_t memory;  // kilobytes
+};
+static_assert(sizeof(StatusRecord) == 32, "status record layout");
+
+// names of ua.alcash.ExecutionResult.Verdict values
+const char* verdictName(Verdict verdict) {
+    switch (verdict) {
+        case OK: return "OK";
+        case WRONG_ANSWER: return "WRONG_ANSWER";
+        case RUNTIME_ERROR: return "RUNTIME_ERROR";
+        case TIME_LIMIT_EXCEEDED: return "TIME_LIMIT_EXCEEDED";
+        case JUDGEMENT_ERROR: return "JUDGEMENT_ERROR";
+        default: return "UNKNOWN";
+    }
+}
+
+string verdictDisplayName(Verdict verdict) {
+    switch (verdict) {
+        case OK: return "ok";
+        case WRONG_ANSWER: return "wrong answer";
+        case RUNTIME_ERROR: return "runtime error";
+        case TIME_LIMIT_EXCEEDED: return "time limit exceeded";
+        case JUDGEMENT_ERROR: return "judgement error";
+        default: return "UNKNOWN";
+    }
+}
+
+bool sendAll(int socketFd, const char* data, size_t size) {
+    while (size > 0) {
+        auto sent = send(socketFd, data, size, 0);
+        if (sent <= 0) return false;
+        data += sent;
+        size -= static_cast<size_t>(sent);
+    }
+    return true;
+}
+
+// the records are written into the status log file, and also sent to ACHelper if it's listening,
+// so that the results are shown as soon as a test finishes
+struct StatusChannels {
+    FILE* log = nullptr;
+    int socketFd = -1;
+};
+
+// the connection starts with the tests list file path, which identifies the problem
+int connectToListener(const string& testsFileName) {
+    if (TESTER_PORT <= 0) return -1;
+    int socketFd = socket(AF_INET, SOCK_STREAM, 0);
+    if (socketFd < 0) return -1;
+    fcntl(socketFd, F_SETFD, FD_CLOEXEC);  // checker shouldn't inherit the connection
+    int noDelay = 1;
+    setsockopt(socketFd, IPPROTO_TCP, TCP_NODELAY, &noDelay, sizeof(noDelay));
+    sockaddr_in address = {};
+    address.sin_family = AF_INET;
+    address.sin_port = htons(TESTER_PORT);
+    address.sin_addr.s_addr = htonl(INADDR_LOOPBACK);
+    string header = testsFileName + '\n';
+    if (connect(socketFd, reinterpret_cast<sockaddr*>(&address), sizeof(address)) != 0
+        || !sendAll(socketFd, header.data(), header.size())) {
+        close(socketFd);
+        return -1;
+    }
+    return socketFd;
+}
+
+void appendStatus(StatusChannels& channels, size_t testIndex, Verdict verdict,
+                  double wallTime = 0, double cpuTime = 0, int64_t memory = 0) {
+    StatusRecord record = {static_cast<int32_t>(testIndex), verdict, wallTime, cpuTime, memory};
+    if (channels.log != nullptr) {
+        fwrite(&record, sizeof(record), 1, channels.log);
+        fflush(channels.log);
+    }
+    // the status log file remains the fallback if the connection is lost
+    if (channels.socketFd >= 0 && !sendAll(channels.socketFd, reinterpret_cast<const char*>(&record), sizeof(record))) {
+        close(channels.socketFd);
+        channels.socketFd = -1;
+    }
+}
+
 // std::getline analog for file descriptors
 bool getline(FILE* file, string& line) {
     line.clear();
@@ -52,8 +158,9 @@ bool getline(FILE* file, string& line) {
 //  0 : success
 // -1 : execution failed
 //  1 : runtime error (error string may be TLE indicating time limit exceeded)
+// resource usage of the child process is stored into usage
 template <class Function>
-int executeProcess(Function f, double timeLimit, string& error) {
+int executeProcess(Function f, double timeLimit, string& error, rusage& usage) {
     int pipefd[2];
     pipe(pipefd);
     auto pid = fork();
@@ -76,7 +183,7 @@ int executeProcess(Function f, double timeLimit, string& error) {
     // parent process
     close(pipefd[1]);  // close output pipe
     int status = 0;
-    int returnedPid = waitpid(pid, &status, 0);
+    int returnedPid = wait4(pid, &status, 0, &usage);
     if (returnedPid != pid) {
         kill(pid, SIGKILL);
     }
@@ -135,80 +242,106 @@ int main(int argc, const char* argv[]) {
     }
 #else
     int testsTotal = 0, testsPassed = 0;
-    for (size_t testIndex = 0, testCount = testCases.size();; ++testIndex) {
-        if (testIndex < testCount) {
-            cout << testCases[testIndex][0] << ": ";
-            if (isSkipped(testIndex)) {
-                cout << "skipping" << endl;
-                continue;
-            }
-            cout << "running" << endl;
-            ++testsTotal;
-        }
-
-        // update tests list file
-        ofstream testsListFile(testsFileName);
-        for (size_t i = 0; i < testIndex; ++i) {
-            testsListFile << testCases[i][0] << ' ' << testCases[i][1] << '\n';
-        }
-        if (testIndex < testCount) {
-            testsListFile << testCases[testIndex][0] << " RUNNING\n";
-        }
-        for (size_t i = testIndex + 1; i < testCount; ++i) {
-            testsListFile << testCases[i][0] << " PENDING\n";
+    size_t testCount = testCases.size();
+    // the log is truncated here, so the records always belong to the current run
+    StatusChannels statusChannels;
+    statusChannels.log = fopen((testsDirectory + STATUS_LOG_NAME).data(), "wb");
+    signal(SIGPIPE, SIG_IGN);  // closed connection is reported by send instead
+    statusChannels.socketFd = connectToListener(testsFileName);
+    // the log of a rerun can have the same size, so the reader recognizes a new run by its ID
+    int64_t runId = chrono::duration_cast<chrono::microseconds>(
+        chrono::system_clock::now().time_since_epoch()).count();
+    appendStatus(statusChannels, testCount, RUN_STARTED, 0, 0, runId);
+    for (size_t testIndex = 0; testIndex < testCount; ++testIndex) {
+        cout << testCases[testIndex][0] << ": ";
+        if (isSkipped(testIndex)) {
+            cout << "skipping" << endl;
+            continue;
         }
-        testsListFile.close();
-        if (testIndex == testCount) break;
+        cout << "running" << endl;
+        ++testsTotal;
+        appendStatus(statusChannels, testIndex, RUNNING);
 
         // run the test as a subprocess and measure time
         TestCase testCase(testCases[testIndex][0]);
         auto start = chrono::system_clock::now();
         string error;
+        rusage usage = {};
         int status = executeProcess([&testCase](){
             testCase.run();
-        }, TIME_LIMIT, error);
+        }, TIME_LIMIT, error, usage);
         auto end = chrono::system_clock::now();
         double elapsed = chrono::duration_cast<chrono::duration<double>>(end - start).count();
+        double cpuTime = usage.ru_utime.tv_sec + usage.ru_utime.tv_usec * 1e-6
+                       + usage.ru_stime.tv_sec + usage.ru_stime.tv_usec * 1e-6;
+#ifdef __APPLE__
+        int64_t memory = usage.ru_maxrss / 1024;  // bytes on macOS
+#else
+        int64_t memory = usage.ru_maxrss;
+#endif
 
         // evaluation
-        ostringstream resultStream;
-        resultStream << fixed << setprecision(3) << elapsed << ' ';
+        Verdict verdict = status == 0 ? OK : RUNTIME_ERROR;
         if (status == 0) {
             // check if answer file is not empty
             ifstream answerFile(testCase.answerFileName);
             if (!answerFile || answerFile.peek() == ifstream::traits_type::eof()) {
                 error = "UNKNOWN";
+                verdict = NO_ANSWER;
             } else {  // run checker
                 string checkerCommand = binaryPath + "Checker";
+                rusage checkerUsage;
                 status = executeProcess([&checkerCommand, &testCase]() {
                     execl(checkerCommand.data(),
                         checkerCommand.data(),
                         testCase.inputFileName.data(),
                         testCase.outputFileName.data(),
                         testCase.answerFileName.data());
-                }, CHECKER_TIME_LIMIT, error);
+                }, CHECKER_TIME_LIMIT, error, checkerUsage);
                 if (status == 1 && error == "TLE") {
                     status = -1;
                 }
+                verdict = status == 0 ? OK : WRONG_ANSWER;
             }
             answerFile.close();
         }
+        string message = error;  // checker message or runtime error description
         if (status == -1) {
-            resultStream << "judgement error";
+            verdict = JUDGEMENT_ERROR;
         } else if (error == "TLE") {
-            resultStream << "time limit exceeded";
-        } else {
-            resultStream << error;
+            verdict = TIME_LIMIT_EXCEEDED;
+        }
+        if (verdict == NO_ANSWER || verdict == JUDGEMENT_ERROR || verdict == TIME_LIMIT_EXCEEDED) {
+            message.clear();
         }
         if (status == 0) {
             ++testsPassed;
         }
-        line = testCases[testIndex][1] = resultStream.str();
-        auto spaceIndex = line.find(' ');
-        cout << line.substr(0, spaceIndex);
-        colorOutput(line.substr(spaceIndex), status == 0);
+        appendStatus(statusChannels, testIndex, verdict, elapsed, cpuTime, memory);
+
+        // the result is stored in the format parsed by ua.alcash.ExecutionResult
+        ostringstream resultStream;
+        resultStream << verdictName(verdict) << fixed << setprecision(3)
+                     << ' ' << elapsed << ' ' << cpuTime << ' ' << memory;
+        if (!message.empty()) {
+            resultStream << ' ' << message;
+        }
+        testCases[testIndex][1] = resultStream.str();
+        cout << fixed << setprecision(3) << elapsed;
+        colorOutput(" " + (message.empty() ? verdictDisplayName(verdict) : message), status == 0);
         cout << "\n";
     }
+
+    // tests list file is written once with the final results, which include checker messages
+    ofstream testsListFile(testsFileName);
+    for (size_t i = 0; i < testCount; ++i) {
+        testsListFile << testCases[i][0] << ' ' << testCases[i][1] << '\n';
+    }
+    testsListFile.close();
+    appendStatus(statusChannels, testCount, RUN_FINISHED);
+    if (statusChannels.log != nullptr) fclose(statusChannels.log);
+    if (statusChannels.socketFd >= 0) close(statusChannels.socketFd);
+
     cout << "========================================\n";
     if (testsPassed == testsTotal) {
         colorOutput("All tests passed:", true);